@@ -2,9 +2,11 @@ package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.AuthRequest;
 import com.example.bankcards.dto.AuthResponse;
+import com.example.bankcards.dto.RefreshTokenRequest;
 import com.example.bankcards.dto.UserDto;
 import com.example.bankcards.dto.UserRegistrationDto;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.security.AuthenticatedUser;
 import com.example.bankcards.service.AuthService;
 import com.example.bankcards.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -13,6 +15,7 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -31,6 +34,20 @@ public class AuthController {
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping("/refresh")
+    @Operation(summary = "Refresh tokens", description = "Exchange a refresh token for a new access and refresh token")
+    public ResponseEntity<AuthResponse> refresh(@Valid @RequestBody RefreshTokenRequest request) {
+        return ResponseEntity.ok(authService.refresh(request.getRefreshToken()));
+    }
+
+    @PostMapping("/logout")
+    @Operation(summary = "Logout", description = "Revoke the current access token and, if given, the refresh token")
+    public ResponseEntity<Void> logout(@AuthenticationPrincipal AuthenticatedUser user,
+                                       @RequestBody(required = false) RefreshTokenRequest request) {
+        authService.logout(user, request != null ? request.getRefreshToken() : null);
+        return ResponseEntity.noContent().build();
+    }
+
     @PostMapping("/register")
     @Operation(summary = "Register new user")
     public ResponseEntity<UserDto> register(@Valid @RequestBody UserRegistrationDto registrationDto) {
@@ -1,8 +1,11 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.CardBulkCreateDto;
 import com.example.bankcards.dto.CardCreateDto;
 import com.example.bankcards.dto.CardDto;
-import com.example.bankcards.security.JwtUtil;
+import com.example.bankcards.dto.CardLookupDto;
+import com.example.bankcards.security.AuthenticatedUser;
+import com.example.bankcards.service.CardIssuanceService;
 import com.example.bankcards.service.CardService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -13,10 +16,12 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
 
@@ -28,7 +33,7 @@ import java.math.BigDecimal;
 public class CardController {
 
     private final CardService cardService;
-    private final JwtUtil jwtUtil;
+    private final CardIssuanceService cardIssuanceService;
 
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
@@ -38,6 +43,28 @@ public class CardController {
         return ResponseEntity.status(HttpStatus.CREATED).body(card);
     }
 
+    @PostMapping("/bulk")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Create cards in bulk (Admin only)",
+            description = "Admin only: issues up to 10000 cards and streams the created cards back as ndjson, one card per line. "
+                    + "The last line is a summary {complete, requested, issued, error}; cards are issued in request order, "
+                    + "so after a failure resend the request starting from card index 'issued'")
+    public ResponseEntity<StreamingResponseBody> createCards(@Valid @RequestBody CardBulkCreateDto bulkCreateDto) {
+        StreamingResponseBody body = cardIssuanceService.issueCards(bulkCreateDto.getCards());
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    @PostMapping("/lookup")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Find card by number (Admin only)",
+            description = "Admin only: the full card number is sent in the request body so it does not appear in URLs and access logs")
+    public ResponseEntity<CardDto> findCardByNumber(@Valid @RequestBody CardLookupDto lookupDto) {
+        CardDto card = cardService.findCardByNumber(lookupDto.getCardNumber());
+        return ResponseEntity.ok(card);
+    }
+
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     @Operation(summary = "Get card by ID")
@@ -60,9 +87,9 @@ public class CardController {
     @PreAuthorize("hasRole('USER')")
     @Operation(summary = "Get my cards")
     public ResponseEntity<Page<CardDto>> getMyCards(
-            Authentication authentication,
+            @AuthenticationPrincipal AuthenticatedUser user,
             @PageableDefault(size = 10) Pageable pageable) {
-        Long userId = jwtUtil.extractUserId(authentication);
+        Long userId = user.userId();
         Page<CardDto> cards = cardService.getUserCards(userId, pageable);
         return ResponseEntity.ok(cards);
     }
@@ -96,8 +123,8 @@ public class CardController {
     @Operation(summary = "Request card block (from user)")
     public ResponseEntity<CardDto> requestBlockCard(
             @PathVariable Long id,
-            Authentication authentication) {
-        Long userId = jwtUtil.extractUserId(authentication);
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Long userId = user.userId();
         CardDto card = cardService.requestCardBlock(id, userId);
         return ResponseEntity.ok(card);
     }
@@ -107,8 +134,8 @@ public class CardController {
     @Operation(summary = "Get card balance")
     public ResponseEntity<BigDecimal> getCardBalance(
             @PathVariable Long id,
-            Authentication authentication) {
-        Long userId = jwtUtil.extractUserId(authentication);
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Long userId = user.userId();
         BigDecimal balance = cardService.getCardBalance(id, userId);
         return ResponseEntity.ok(balance);
     }
@@ -1,8 +1,15 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.CursorPage;
+import com.example.bankcards.dto.TransactionView;
 import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.dto.TransferStatusDto;
 import com.example.bankcards.entity.Transaction;
-import com.example.bankcards.security.JwtUtil;
+import com.example.bankcards.security.AuthenticatedUser;
+import com.example.bankcards.service.IdempotencyService;
+import com.example.bankcards.service.TransactionExportService;
 import com.example.bankcards.service.TransferService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -12,11 +19,21 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/transfers")
@@ -26,37 +43,159 @@ import org.springframework.web.bind.annotation.*;
 public class TransferController {
 
     private final TransferService transferService;
-    private final JwtUtil jwtUtil;
+    private final IdempotencyService idempotencyService;
+    private final TransactionExportService transactionExportService;
 
     @PostMapping
     @PreAuthorize("hasRole('USER')")
-    @Operation(summary = "Transfer between own cards")
-    public ResponseEntity<Transaction> transferMoney(
+    @Operation(summary = "Transfer between own cards",
+            description = "Repeated requests with the same Idempotency-Key return the original transaction")
+    public ResponseEntity<TransactionView> transferMoney(
             @Valid @RequestBody TransferDto transferDto,
-            Authentication authentication) {
-        Long userId = jwtUtil.extractUserId(authentication);
-        Transaction transaction = transferService.transferBetweenOwnCards(transferDto, userId);
-        return ResponseEntity.status(HttpStatus.CREATED).body(transaction);
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Long userId = user.userId();
+        Transaction transaction = idempotencyKey == null
+                ? awaitTransfer(transferService.submitTransfer(transferDto, userId))
+                : idempotencyService.execute(userId, idempotencyKey, transferDto,
+                        () -> transferService.transferBetweenOwnCards(transferDto, userId));
+        return ResponseEntity.status(HttpStatus.CREATED).body(transferService.toView(transaction));
+    }
+
+    @PostMapping(params = "async=true")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(summary = "Submit transfer for asynchronous settlement",
+            description = "Stores the transfer as PENDING and returns 202; poll GET /api/transfers/{id} for the result")
+    public ResponseEntity<TransferStatusDto> submitTransfer(
+            @Valid @RequestBody TransferDto transferDto,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Long userId = user.userId();
+        Transaction transaction = idempotencyKey == null
+                ? transferService.submitPendingTransfer(transferDto, userId)
+                : idempotencyService.execute(userId, idempotencyKey, transferDto,
+                        () -> transferService.submitPendingTransfer(transferDto, userId));
+        TransferStatusDto status = TransferStatusDto.builder()
+                .transactionId(transaction.getId())
+                .status(transaction.getStatus())
+                .build();
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/transfers/" + transaction.getId()))
+                .body(status);
+    }
+
+    @GetMapping("/{id}")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(summary = "Get transfer status")
+    public ResponseEntity<TransferStatusDto> getTransferStatus(
+            @PathVariable Long id,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Long userId = user.userId();
+        return ResponseEntity.ok(transferService.getTransferStatus(id, userId));
+    }
+
+    @PostMapping("/batch")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(summary = "Batch transfer between own cards",
+            description = "Settles many transfers in one database transaction (ALL_OR_NOTHING or BEST_EFFORT)")
+    public ResponseEntity<BatchTransferResponse> transferBatch(
+            @Valid @RequestBody BatchTransferRequest batchRequest,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Long userId = user.userId();
+        BatchTransferResponse response = transferService.transferBatch(batchRequest, userId);
+        return ResponseEntity.ok(response);
     }
 
     @GetMapping("/my-transactions")
     @PreAuthorize("hasRole('USER')")
     @Operation(summary = "Get my transactions")
-    public ResponseEntity<Page<Transaction>> getMyTransactions(
-            Authentication authentication,
+    public ResponseEntity<Page<TransactionView>> getMyTransactions(
+            @AuthenticationPrincipal AuthenticatedUser user,
             @PageableDefault(size = 10) Pageable pageable) {
-        Long userId = jwtUtil.extractUserId(authentication);
-        Page<Transaction> transactions = transferService.getUserTransactions(userId, pageable);
+        Long userId = user.userId();
+        Page<TransactionView> transactions = transferService.getUserTransactions(userId, pageable);
         return ResponseEntity.ok(transactions);
     }
 
+    @GetMapping("/my-transactions/cursor")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(summary = "Get my transactions by cursor",
+            description = "Newest first; pass nextCursor from the previous response to get the next page")
+    public ResponseEntity<CursorPage<TransactionView>> getMyTransactionsByCursor(
+            @AuthenticationPrincipal AuthenticatedUser user,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        Long userId = user.userId();
+        return ResponseEntity.ok(transferService.getUserTransactions(userId, cursor, size));
+    }
+
     @GetMapping("/card/{cardId}")
     @PreAuthorize("hasRole('USER')")
-    @Operation(summary = "Get card transactions")
-    public ResponseEntity<Page<Transaction>> getCardTransactions(
+    @Operation(summary = "Get card transactions",
+            description = "Only the card owner or an admin may read the history")
+    public ResponseEntity<Page<TransactionView>> getCardTransactions(
             @PathVariable Long cardId,
-            @PageableDefault(size = 10) Pageable pageable) {
-        Page<Transaction> transactions = transferService.getCardTransactions(cardId, pageable);
+            @PageableDefault(size = 10) Pageable pageable,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Page<TransactionView> transactions = isAdmin(user)
+                ? transferService.getCardTransactions(cardId, pageable)
+                : transferService.getCardTransactions(cardId, user.userId(), pageable);
         return ResponseEntity.ok(transactions);
     }
+
+    @GetMapping("/card/{cardId}/cursor")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(summary = "Get card transactions by cursor",
+            description = "Newest first; pass nextCursor from the previous response to get the next page. "
+                    + "Only the card owner or an admin may read the history")
+    public ResponseEntity<CursorPage<TransactionView>> getCardTransactionsByCursor(
+            @PathVariable Long cardId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        CursorPage<TransactionView> page = isAdmin(user)
+                ? transferService.getCardTransactions(cardId, cursor, size)
+                : transferService.getCardTransactions(cardId, user.userId(), cursor, size);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping("/card/{cardId}/export")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(summary = "Export card transactions",
+            description = "Streams the card history oldest first as csv or ndjson; [from, to) filters by creation time. "
+                    + "The response is gzip-compressed when the client sends Accept-Encoding: gzip")
+    public ResponseEntity<StreamingResponseBody> exportCardTransactions(
+            @PathVariable Long cardId,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Long userId = user.userId();
+        TransactionExportService.ExportFormat exportFormat = TransactionExportService.ExportFormat.of(format);
+        StreamingResponseBody body = transactionExportService.exportCardTransactions(
+                cardId, userId, exportFormat, from, to);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("card-" + cardId + "-transactions." + exportFormat.getExtension())
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
+    private static boolean isAdmin(AuthenticatedUser user) {
+        return user.authorities().stream().anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+    }
+
+    private Transaction awaitTransfer(CompletableFuture<Transaction> transfer) {
+        try {
+            return transfer.join();
+        } catch (CompletionException e) {
+            // Исключения полосы исполнения пробрасываем как есть, чтобы их обработал GlobalExceptionHandler
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
 }
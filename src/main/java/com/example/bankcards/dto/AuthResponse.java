@@ -14,6 +14,8 @@ import java.util.Set;
 public class AuthResponse {
     private String token;
     private String type = "Bearer";
+    private Long expiresIn; // срок жизни access-токена, секунды
+    private String refreshToken;
     private Long id;
     private String username;
     private String email;
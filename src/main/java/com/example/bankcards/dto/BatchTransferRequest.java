@@ -0,0 +1,32 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransferRequest {
+
+    @NotEmpty(message = "Transfers are required")
+    @Size(max = 1000, message = "Batch can contain at most 1000 transfers")
+    private List<@Valid TransferDto> transfers;
+
+    @NotNull(message = "Mode is required")
+    @Builder.Default
+    private Mode mode = Mode.ALL_OR_NOTHING;
+
+    public enum Mode {
+        ALL_OR_NOTHING,
+        BEST_EFFORT
+    }
+}
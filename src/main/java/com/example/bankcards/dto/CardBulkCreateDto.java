@@ -0,0 +1,22 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardBulkCreateDto {
+
+    @NotEmpty(message = "At least one card is required")
+    @Size(max = 10000, message = "No more than 10000 cards per request")
+    private List<@Valid CardCreateDto> cards;
+}
@@ -0,0 +1,23 @@
+package com.example.bankcards.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Последняя строка NDJSON-ответа массового выпуска. Карты выпускаются в порядке запроса, поэтому при complete = false
+ * первые issued карт запроса уже выпущены, и для продолжения достаточно повторить запрос с карт начиная с issued.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CardBulkIssueSummary {
+    private boolean complete;
+    private int requested;
+    private int issued;
+    private String error;
+}
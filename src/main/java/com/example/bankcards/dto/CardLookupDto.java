@@ -0,0 +1,19 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardLookupDto {
+
+    @NotBlank(message = "Card number is required")
+    @Pattern(regexp = "^[0-9][0-9 -]{11,22}$", message = "Card number must contain 12 to 19 digits")
+    private String cardNumber;
+}
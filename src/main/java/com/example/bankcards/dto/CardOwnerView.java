@@ -0,0 +1,19 @@
+package com.example.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Id карты и ее владельца. Заполняется конструктором в JPQL-запросе CardRepository.findOwnersByIdIn,
+ * в ответы API не отдается.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardOwnerView {
+    private Long cardId;
+    private Long ownerId;
+}
@@ -0,0 +1,42 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.Card;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Строка списка карт вместе с id и именем владельца. Заполняется конструктором прямо в JPQL-запросе
+ * (порядок полей совпадает с порядком аргументов в запросах CardRepository), поэтому владелец
+ * не загружается отдельным запросом. В ответы API не отдается: из нее строится CardDto.
+ * cardNumber (зашифрованный) нужен только картам, у которых еще не заполнен panLast4.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardView {
+    private Long id;
+    private String cardNumber;
+    private String panLast4;
+    private String cardHolder;
+    private LocalDate expiryDate;
+    private Card.CardStatus status;
+    private BigDecimal balance;
+    private Long ownerId;
+    private String ownerUsername;
+
+    public static CardView of(Card card) {
+        return new CardView(card.getId(), card.getCardNumber(), card.getPanLast4(), card.getCardHolder(),
+                card.getExpiryDate(), card.getStatus(), card.getBalance(),
+                card.getOwner().getId(), card.getOwner().getUsername());
+    }
+
+    public Card.CardStatus effectiveStatus() {
+        return Card.effectiveStatus(status, expiryDate);
+    }
+}
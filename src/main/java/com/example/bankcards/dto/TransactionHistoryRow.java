@@ -0,0 +1,23 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.Transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Строка истории транзакций владельца из нативного запроса TransactionRepository.findHistoryByOwnerId
+ * (проекция по псевдонимам столбцов). В ответы API не отдается: из нее строится TransactionView.
+ */
+public interface TransactionHistoryRow {
+    Long getId();
+    Long getFromCardId();
+    Long getToCardId();
+    BigDecimal getAmount();
+    Transaction.TransactionStatus getStatus();
+    String getDescription();
+    String getFailureReason();
+    LocalDateTime getCreatedAt();
+    String getFromCardLast4();
+    String getToCardLast4();
+}
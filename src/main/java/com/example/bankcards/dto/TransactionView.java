@@ -0,0 +1,49 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.Transaction;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Транзакция в ответах API. Заполняется конструктором прямо в JPQL-запросе,
+ * порядок полей совпадает с порядком аргументов в запросах TransactionRepository.
+ * Запросы отдают только pan_last4 карт; маски строит TransferService через CardMaskingUtil.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransactionView {
+    private Long id;
+    private Long fromCardId;
+    private Long toCardId;
+    private BigDecimal amount;
+    private Transaction.TransactionStatus status;
+    private String description;
+    private String failureReason;
+    private LocalDateTime createdAt;
+    @JsonIgnore
+    private String fromCardLast4;
+    @JsonIgnore
+    private String toCardLast4;
+    private String fromCardMasked; // **** **** **** 1234
+    private String toCardMasked;
+
+    /**
+     * Конструктор для JPQL-запросов: маски заполняются позже.
+     */
+    public TransactionView(Long id, Long fromCardId, Long toCardId, BigDecimal amount,
+                           Transaction.TransactionStatus status, String description, String failureReason,
+                           LocalDateTime createdAt, String fromCardLast4, String toCardLast4) {
+        this(id, fromCardId, toCardId, amount, status, description, failureReason, createdAt,
+                fromCardLast4, toCardLast4, null, null);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.Transaction;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransferStatusDto {
+    private Long transactionId;
+    private Transaction.TransactionStatus status;
+    private Long fromCardId;
+    private Long toCardId;
+    private BigDecimal amount;
+    private String failureReason;
+    private LocalDateTime createdAt;
+}
@@ -19,12 +19,19 @@ import java.time.LocalDateTime;
 public class Card {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cards_seq")
+    @SequenceGenerator(name = "cards_seq", sequenceName = "cards_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "card_number", nullable = false, unique = true)
     private String cardNumber; // Зашифрованный номер
 
+    @Column(name = "card_number_fingerprint", length = 64, unique = true)
+    private String cardNumberFingerprint; // HMAC номера для поиска
+
+    @Column(name = "pan_last4", length = 4)
+    private String panLast4; // Последние 4 цифры для маскированного вывода
+
     @Column(name = "card_holder", nullable = false, length = 100)
     private String cardHolder;
 
@@ -65,9 +72,15 @@ public class Card {
         return LocalDate.now().isAfter(expiryDate);
     }
 
-    public void updateStatus() {
-        if (isExpired() && status == CardStatus.ACTIVE) {
-            this.status = CardStatus.EXPIRED;
-        }
+    /**
+     * Статус с учетом срока действия: просроченная активная карта считается EXPIRED еще до того,
+     * как CardExpirySweeper обновит ее в базе. Сущность при этом не меняется.
+     */
+    public CardStatus effectiveStatus() {
+        return effectiveStatus(status, expiryDate);
+    }
+
+    public static CardStatus effectiveStatus(CardStatus status, LocalDate expiryDate) {
+        return status == CardStatus.ACTIVE && LocalDate.now().isAfter(expiryDate) ? CardStatus.EXPIRED : status;
     }
 }
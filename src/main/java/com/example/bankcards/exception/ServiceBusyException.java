@@ -0,0 +1,10 @@
+package com.example.bankcards.exception;
+
+/**
+ * Перегрузка: запрос отклонен сразу, клиенту стоит повторить его позже.
+ */
+public class ServiceBusyException extends RuntimeException {
+    public ServiceBusyException(String message) {
+        super(message);
+    }
+}
@@ -1,28 +1,186 @@
 package com.example.bankcards.repository;
 
+import com.example.bankcards.dto.CardOwnerView;
+import com.example.bankcards.dto.CardView;
 import com.example.bankcards.entity.Card;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface CardRepository extends JpaRepository<Card, Long> {
 
-    Page<Card> findByOwnerId(Long ownerId, Pageable pageable);
     List<Card> findByOwnerId(Long ownerId);
 
-    Page<Card> findByOwnerIdAndStatus(Long ownerId, Card.CardStatus status, Pageable pageable);
+    /**
+     * Списки карт в виде CardView: карта и владелец читаются одним запросом с JOIN,
+     * для страниц отдельный COUNT без соединения с users.
+     */
+    @Query(value = """
+    SELECT new com.example.bankcards.dto.CardView(
+        c.id, c.cardNumber, c.panLast4, c.cardHolder, c.expiryDate, c.status, c.balance, o.id, o.username)
+    FROM Card c JOIN c.owner o
+""", countQuery = "SELECT COUNT(c) FROM Card c")
+    Page<CardView> findAllViews(Pageable pageable);
 
-    Optional<Card> findByCardNumber(String cardNumber);
+    @Query(value = """
+    SELECT new com.example.bankcards.dto.CardView(
+        c.id, c.cardNumber, c.panLast4, c.cardHolder, c.expiryDate, c.status, c.balance, o.id, o.username)
+    FROM Card c JOIN c.owner o
+    WHERE o.id = :ownerId
+""", countQuery = "SELECT COUNT(c) FROM Card c WHERE c.owner.id = :ownerId")
+    Page<CardView> findViewsByOwnerId(@Param("ownerId") Long ownerId, Pageable pageable);
+
+    @Query("""
+    SELECT new com.example.bankcards.dto.CardView(
+        c.id, c.cardNumber, c.panLast4, c.cardHolder, c.expiryDate, c.status, c.balance, o.id, o.username)
+    FROM Card c JOIN c.owner o
+    WHERE o.id = :ownerId
+    ORDER BY c.id
+""")
+    List<CardView> findViewsByOwnerId(@Param("ownerId") Long ownerId);
+
+    @Query("""
+    SELECT new com.example.bankcards.dto.CardView(
+        c.id, c.cardNumber, c.panLast4, c.cardHolder, c.expiryDate, c.status, c.balance, o.id, o.username)
+    FROM Card c JOIN c.owner o
+    WHERE c.id IN :ids
+""")
+    List<CardView> findViewsByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("""
+    SELECT new com.example.bankcards.dto.CardView(
+        c.id, c.cardNumber, c.panLast4, c.cardHolder, c.expiryDate, c.status, c.balance, o.id, o.username)
+    FROM Card c JOIN c.owner o
+    WHERE c.id = :id
+""")
+    Optional<CardView> findViewById(@Param("id") Long id);
+
+    @Query("SELECT c.id FROM Card c WHERE c.owner.id = :ownerId")
+    List<Long> findIdsByOwnerId(@Param("ownerId") Long ownerId);
+
+    /**
+     * Карты в статусе ACTIVE или BLOCKED; активные с истекшим сроком сюда не попадают, даже если еще не переведены в EXPIRED.
+     */
+    @Query(value = """
+    SELECT new com.example.bankcards.dto.CardView(
+        c.id, c.cardNumber, c.panLast4, c.cardHolder, c.expiryDate, c.status, c.balance, o.id, o.username)
+    FROM Card c JOIN c.owner o
+    WHERE o.id = :ownerId
+      AND c.status = :status
+      AND (c.status <> 'ACTIVE' OR c.expiryDate >= CURRENT_DATE)
+""", countQuery = """
+    SELECT COUNT(c) FROM Card c
+    WHERE c.owner.id = :ownerId
+      AND c.status = :status
+      AND (c.status <> 'ACTIVE' OR c.expiryDate >= CURRENT_DATE)
+""")
+    Page<CardView> findViewsByOwnerIdAndEffectiveStatus(@Param("ownerId") Long ownerId,
+                                                        @Param("status") Card.CardStatus status,
+                                                        Pageable pageable);
+
+    /**
+     * Просроченные карты, включая активные, которые CardExpirySweeper еще не перевел в EXPIRED.
+     */
+    @Query(value = """
+    SELECT new com.example.bankcards.dto.CardView(
+        c.id, c.cardNumber, c.panLast4, c.cardHolder, c.expiryDate, c.status, c.balance, o.id, o.username)
+    FROM Card c JOIN c.owner o
+    WHERE o.id = :ownerId
+      AND (c.status = 'EXPIRED' OR c.status = 'ACTIVE' AND c.expiryDate < CURRENT_DATE)
+""", countQuery = """
+    SELECT COUNT(c) FROM Card c
+    WHERE c.owner.id = :ownerId
+      AND (c.status = 'EXPIRED' OR c.status = 'ACTIVE' AND c.expiryDate < CURRENT_DATE)
+""")
+    Page<CardView> findExpiredViewsByOwnerId(@Param("ownerId") Long ownerId, Pageable pageable);
+
+    Optional<Card> findByCardNumberFingerprint(String cardNumberFingerprint);
 
     @Query("SELECT c FROM Card c WHERE c.owner.id = :ownerId AND c.id = :cardId")
     Optional<Card> findByIdAndOwnerId(@Param("cardId") Long cardId, @Param("ownerId") Long ownerId);
 
-    boolean existsByCardNumber(String cardNumber);
+    boolean existsByCardNumberFingerprint(String cardNumberFingerprint);
+
+    @Query("SELECT c.cardNumberFingerprint FROM Card c WHERE c.cardNumberFingerprint IN :fingerprints")
+    Set<String> findExistingFingerprints(@Param("fingerprints") Collection<String> fingerprints);
+
+    boolean existsByIdAndOwnerId(Long id, Long ownerId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id = :id")
+    Optional<Card> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Владельцы карт без загрузки сущностей и без блокировки строк.
+     */
+    @Query("SELECT new com.example.bankcards.dto.CardOwnerView(c.id, c.owner.id) FROM Card c WHERE c.id IN :ids")
+    List<CardOwnerView> findOwnersByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id IN :ids ORDER BY c.id")
+    List<Card> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("""
+    UPDATE Card c
+    SET c.balance = c.balance - :amount, c.updatedAt = CURRENT_TIMESTAMP
+    WHERE c.id = :cardId
+      AND c.owner.id = :ownerId
+      AND c.status = 'ACTIVE'
+      AND c.expiryDate >= CURRENT_DATE
+      AND c.balance >= :amount
+""")
+    int debitIfAvailable(@Param("cardId") Long cardId, @Param("ownerId") Long ownerId,
+                         @Param("amount") BigDecimal amount);
+
+    @Modifying
+    @Query("""
+    UPDATE Card c
+    SET c.balance = c.balance + :amount, c.updatedAt = CURRENT_TIMESTAMP
+    WHERE c.id = :cardId
+      AND c.owner.id = :ownerId
+      AND c.status = 'ACTIVE'
+      AND c.expiryDate >= CURRENT_DATE
+""")
+    int creditIfActive(@Param("cardId") Long cardId, @Param("ownerId") Long ownerId,
+                       @Param("amount") BigDecimal amount);
+
+    /**
+     * Блокирует и возвращает id не более limit просроченных активных карт
+     * (по частичному индексу idx_cards_active_expiry_date).
+     * Строки блокируются в порядке возрастания id, как и в переводах, чтобы очистка и перевод
+     * не заблокировали друг друга.
+     */
+    @Query(value = """
+    SELECT id FROM cards
+    WHERE status = 'ACTIVE' AND expiry_date < CURRENT_DATE
+    ORDER BY id
+    LIMIT :limit
+    FOR UPDATE
+""", nativeQuery = true)
+    List<Long> lockExpiredActiveCardIds(@Param("limit") int limit);
+
+    /**
+     * Переводит в EXPIRED активные карты из списка.
+     */
+    @Modifying
+    @Query("""
+    UPDATE Card c
+    SET c.status = 'EXPIRED', c.updatedAt = CURRENT_TIMESTAMP
+    WHERE c.id IN :ids AND c.status = 'ACTIVE'
+""")
+    int expireActiveCards(@Param("ids") Collection<Long> ids);
 }
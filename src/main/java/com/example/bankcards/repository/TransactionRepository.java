@@ -1,27 +1,142 @@
 package com.example.bankcards.repository;
 
+import com.example.bankcards.dto.TransactionHistoryRow;
+import com.example.bankcards.dto.TransactionView;
 import com.example.bankcards.entity.Transaction;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
 
-    Page<Transaction> findByFromCardIdOrToCardId(Long fromCardId, Long toCardId, Pageable pageable);
+    /**
+     * Транзакции карты в виде TransactionView: одна выборка из transactions с соединением с картами
+     * ради pan_last4 для маскированных номеров, сами сущности карт не загружаются.
+     */
+    @Query(value = """
+    SELECT new com.example.bankcards.dto.TransactionView(
+        t.id, t.fromCard.id, t.toCard.id, t.amount, t.status, t.description, t.failureReason, t.createdAt,
+        fc.panLast4, tc.panLast4)
+    FROM Transaction t
+    JOIN t.fromCard fc
+    JOIN t.toCard tc
+    WHERE t.fromCard.id = :cardId OR t.toCard.id = :cardId
+""", countQuery = """
+    SELECT COUNT(t)
+    FROM Transaction t
+    WHERE t.fromCard.id = :cardId OR t.toCard.id = :cardId
+""")
+    Page<TransactionView> findViewsByCardId(@Param("cardId") Long cardId, Pageable pageable);
+
+    /**
+     * История транзакций всех карт пользователя, новые сначала.
+     * Карты пользователя берутся соединением по cards.owner_id, сущности не загружаются: строки отдаются
+     * проекцией TransactionHistoryRow вместе с pan_last4 обеих карт, которые присоединяются уже к странице.
+     * Исходящие и входящие выбираются отдельными ветками UNION ALL, каждая по своему индексу
+     * и не более чем на offset + limit строк. Входящие с другой карты того же пользователя уже есть
+     * среди исходящих и во второй ветке пропускаются, поэтому DISTINCT не нужен.
+     */
+    @Query(value = """
+    SELECT h.id AS id, h.from_card_id AS fromCardId, h.to_card_id AS toCardId, h.amount AS amount,
+           h.status AS status, h.description AS description, h.failure_reason AS failureReason,
+           h.created_at AS createdAt, fc.pan_last4 AS fromCardLast4, tc.pan_last4 AS toCardLast4
+    FROM (
+        (SELECT t.*
+         FROM transactions t
+         JOIN cards c ON c.id = t.from_card_id
+         WHERE c.owner_id = :ownerId
+         ORDER BY t.created_at DESC, t.id DESC
+         LIMIT :branchLimit)
+        UNION ALL
+        (SELECT t.*
+         FROM transactions t
+         JOIN cards c ON c.id = t.to_card_id
+         JOIN cards f ON f.id = t.from_card_id
+         WHERE c.owner_id = :ownerId
+           AND f.owner_id <> :ownerId
+         ORDER BY t.created_at DESC, t.id DESC
+         LIMIT :branchLimit)
+    ) h
+    JOIN cards fc ON fc.id = h.from_card_id
+    JOIN cards tc ON tc.id = h.to_card_id
+    ORDER BY h.created_at DESC, h.id DESC
+    LIMIT :limit OFFSET :offset
+""", nativeQuery = true)
+    List<TransactionHistoryRow> findHistoryByOwnerId(@Param("ownerId") Long ownerId,
+                                                     @Param("branchLimit") long branchLimit,
+                                                     @Param("limit") int limit,
+                                                     @Param("offset") long offset);
+
+    @Query(value = """
+    SELECT (SELECT COUNT(*)
+            FROM transactions t
+            JOIN cards c ON c.id = t.from_card_id
+            WHERE c.owner_id = :ownerId)
+         + (SELECT COUNT(*)
+            FROM transactions t
+            JOIN cards c ON c.id = t.to_card_id
+            JOIN cards f ON f.id = t.from_card_id
+            WHERE c.owner_id = :ownerId AND f.owner_id <> :ownerId)
+""", nativeQuery = true)
+    long countHistoryByOwnerId(@Param("ownerId") Long ownerId);
 
+    /**
+     * Исходящие транзакции карт, идущие после позиции (createdAt, id) в порядке убывания.
+     * Поиск по индексу (from_card_id, created_at, id) без OFFSET и без COUNT.
+     */
     @Query("""
-    SELECT DISTINCT t
+    SELECT new com.example.bankcards.dto.TransactionView(
+        t.id, t.fromCard.id, t.toCard.id, t.amount, t.status, t.description, t.failureReason, t.createdAt,
+        fc.panLast4, tc.panLast4)
     FROM Transaction t
-    WHERE t.fromCard.id IN :fromCardIds
-       OR t.toCard.id IN :toCardIds
+    JOIN t.fromCard fc
+    JOIN t.toCard tc
+    WHERE t.fromCard.id IN :cardIds
+      AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.id < :id))
+    ORDER BY t.createdAt DESC, t.id DESC
 """)
-    Page<Transaction> findByFromCardIdInOrToCardIdIn(@Param("fromCardIds")List<Long> fromCardIds,
-                                                     @Param("toCardIds") List<Long> toCardIds, Pageable pageable);
+    List<TransactionView> findOutgoingBefore(@Param("cardIds") Collection<Long> cardIds,
+                                             @Param("createdAt") LocalDateTime createdAt,
+                                             @Param("id") Long id, Limit limit);
+
+    /**
+     * Входящие транзакции карт, идущие после позиции (createdAt, id), по индексу (to_card_id, created_at, id).
+     */
+    @Query("""
+    SELECT new com.example.bankcards.dto.TransactionView(
+        t.id, t.fromCard.id, t.toCard.id, t.amount, t.status, t.description, t.failureReason, t.createdAt,
+        fc.panLast4, tc.panLast4)
+    FROM Transaction t
+    JOIN t.fromCard fc
+    JOIN t.toCard tc
+    WHERE t.toCard.id IN :cardIds
+      AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.id < :id))
+    ORDER BY t.createdAt DESC, t.id DESC
+""")
+    List<TransactionView> findIncomingBefore(@Param("cardIds") Collection<Long> cardIds,
+                                             @Param("createdAt") LocalDateTime createdAt,
+                                             @Param("id") Long id, Limit limit);
+
+    /**
+     * Забирает пачку ожидающих переводов с блокировкой строк.
+     * Таймаут блокировки -2 означает SKIP LOCKED: строки, уже захваченные другим обработчиком, пропускаются.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT t FROM Transaction t WHERE t.status = 'PENDING' ORDER BY t.id")
+    List<Transaction> findPendingForSettlement(Pageable pageable);
 
 }
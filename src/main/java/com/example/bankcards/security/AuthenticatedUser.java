@@ -0,0 +1,22 @@
+package com.example.bankcards.security;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Principal аутентифицированного запроса. Строится JwtAuthenticationFilter из claims токена,
+ * контроллеры получают id пользователя через @AuthenticationPrincipal без обращения к базе.
+ * tokenId (jti) и tokenExpiresAt нужны для отзыва текущего токена при выходе; у старых токенов без jti они null.
+ */
+public record AuthenticatedUser(Long userId, String username, Collection<? extends GrantedAuthority> authorities,
+                                String tokenId, LocalDateTime tokenExpiresAt)
+        implements Principal {
+
+    @Override
+    public String getName() {
+        return username;
+    }
+}
@@ -1,12 +1,15 @@
 package com.example.bankcards.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -16,7 +19,14 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 
+/**
+ * Аутентификация по JWT. В режиме без состояния (jwt.stateless.enabled) principal строится из claims токена:
+ * userId, роли и версия безопасности, которая сверяется с UserSecurityVersions, так что пользователь из базы не читается.
+ * Токены, выпущенные без ролей и версии, и режим с выключенным флагом по-прежнему загружают пользователя.
+ * Отозванные при выходе токены (jti) отклоняются по RevokedAccessTokens, который тоже не обращается к базе.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
@@ -24,6 +34,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final UserDetailsService userDetailsService;
+    private final UserSecurityVersions userSecurityVersions;
+    private final RevokedAccessTokens revokedAccessTokens;
+
+    @Value("${jwt.stateless.enabled:true}")
+    private boolean statelessEnabled;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -32,22 +47,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = parseJwt(request);
 
-            if (jwt != null && jwtUtil.validateToken(jwt)) {
-                String username = jwtUtil.extractUsername(jwt);
-
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            // Подпись проверяется один раз (или берется из кэша проверенных токенов), дальше работаем с claims
+            Claims claims = jwt != null ? jwtUtil.parseToken(jwt).orElse(null) : null;
+            AuthenticatedUser user = claims != null ? authenticate(claims) : null;
+            if (user != null) {
+                UsernamePasswordAuthenticationToken authentication =
+                        new UsernamePasswordAuthenticationToken(
+                                user,
+                                null,
+                                user.authorities()
+                        );
 
-                if (jwtUtil.validateToken(jwt, userDetails)) {
-                    UsernamePasswordAuthenticationToken authentication =
-                            new UsernamePasswordAuthenticationToken(
-                                    userDetails,
-                                    null,
-                                    userDetails.getAuthorities()
-                            );
-
-                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
-                }
+                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(authentication);
             }
         } catch (Exception e) {
             log.error("Cannot set user authentication: {}", e.getMessage());
@@ -56,6 +68,39 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private AuthenticatedUser authenticate(Claims claims) {
+        Long userId = JwtUtil.userId(claims);
+        if (userId == null) {
+            return null;
+        }
+
+        String tokenId = JwtUtil.tokenId(claims);
+        if (tokenId != null && revokedAccessTokens.isRevoked(tokenId)) {
+            log.debug("Rejected revoked token {} of user {}", tokenId, userId);
+            return null;
+        }
+
+        // Пользователь заблокирован, сменил роли, пароль или имя, либо удален после выпуска токена
+        Long version = JwtUtil.securityVersion(claims);
+        if (version != null && !userSecurityVersions.isCurrent(userId, version)) {
+            log.debug("Rejected token of user {} with outdated security version {}", userId, version);
+            return null;
+        }
+
+        List<String> roles = JwtUtil.roles(claims);
+        if (statelessEnabled && version != null && roles != null) {
+            return new AuthenticatedUser(userId, claims.getSubject(),
+                    roles.stream().map(SimpleGrantedAuthority::new).toList(), tokenId, JwtUtil.expiresAt(claims));
+        }
+
+        UserDetails userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+        if (!userDetails.isEnabled()) {
+            return null;
+        }
+        return new AuthenticatedUser(userId, userDetails.getUsername(), userDetails.getAuthorities(),
+                tokenId, JwtUtil.expiresAt(claims));
+    }
+
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
 
@@ -1,45 +1,115 @@
 package com.example.bankcards.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+/**
+ * Выпуск и проверка JWT. Ключ и парсер (неизменяемый и потокобезопасный) создаются один раз при старте.
+ * Подпись токена проверяется один раз: проверенные claims кэшируются по SHA-256 от токена
+ * до момента exp, так что повторные запросы с тем же токеном не пересчитывают HMAC.
+ * Метрики кэша: cache.gets, cache.size и др. с тегом cache=jwt.verified.
+ */
 @Component
+@RequiredArgsConstructor
 @Slf4j
 public class JwtUtil {
 
+    private static final String USER_ID_CLAIM = "userId";
+    private static final String ROLES_CLAIM = "roles";
+    private static final String VERSION_CLAIM = "ver";
+
+    private final MeterRegistry meterRegistry;
+
     @Value("${jwt.secret}")
     private String secret;
 
     @Value("${jwt.expiration}")
     private Long expiration;
 
-    /**
-     * Генерирует секретный ключ для подписи JWT
-     */
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+    @Value("${jwt.verified-cache.enabled:true}")
+    private boolean verifiedCacheEnabled;
+
+    @Value("${jwt.verified-cache.maximum-size:10000}")
+    private long verifiedCacheMaximumSize;
+
+    private SecretKey signingKey;
+    private JwtParser parser;
+    private Cache<String, Claims> verifiedTokens;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheMaximumSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String tokenHash, Claims claims, long currentTime) {
+                        return Math.max(0, TimeUnit.MILLISECONDS.toNanos(
+                                claims.getExpiration().getTime() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String tokenHash, Claims claims, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(tokenHash, claims, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String tokenHash, Claims claims, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt.verified");
     }
 
     /**
-     * Генерирует JWT токен для пользователя с userId
+     * Генерирует JWT токен для пользователя с userId, ролями и версией безопасности:
+     * по ним JwtAuthenticationFilter аутентифицирует запрос без загрузки пользователя
      */
-    public String generateToken(UserDetails userDetails, Long userId) {
+    public String generateToken(UserDetails userDetails, Long userId, long securityVersion) {
         Map<String, Object> claims = new HashMap<>();
-        claims.put("userId", userId);
+        claims.put(USER_ID_CLAIM, userId);
+        claims.put(ROLES_CLAIM, userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .sorted()
+                .toList());
+        claims.put(VERSION_CLAIM, securityVersion);
         return createToken(claims, userDetails.getUsername());
     }
 
@@ -50,28 +120,69 @@ public class JwtUtil {
         Map<String, Object> claims = new HashMap<>();
         return createToken(claims, userDetails.getUsername());
     }
-    public Long extractUserId(Authentication authentication) {
-        String token = extractTokenFromAuthentication(authentication);
-        return extractUserIdFromToken(token);
+
+    /**
+     * Срок жизни access-токена (jwt.expiration).
+     */
+    public Duration getAccessTokenTtl() {
+        return Duration.ofMillis(expiration);
     }
+
     public Long extractUserIdFromToken(String token) {
-        try {
-            Claims claims = extractAllClaims(token);
-            Object userIdObj = claims.get("userId");
-            if (userIdObj instanceof Integer) {
-                return ((Integer) userIdObj).longValue();
-            } else if (userIdObj instanceof Long) {
-                return (Long) userIdObj;
-            }
-            return null;
-        } catch (Exception e) {
-            log.error("Failed to extract userId from token: {}", e.getMessage());
+        return parseToken(token).map(JwtUtil::userId).orElse(null);
+    }
+
+    /**
+     * userId из проверенных claims; null, если токен выпущен без него.
+     */
+    public static Long userId(Claims claims) {
+        return longClaim(claims, USER_ID_CLAIM);
+    }
+
+    /**
+     * Версия безопасности из проверенных claims; null у токенов, выпущенных без нее.
+     */
+    public static Long securityVersion(Claims claims) {
+        return longClaim(claims, VERSION_CLAIM);
+    }
+
+    /**
+     * Роли из проверенных claims; null у токенов, выпущенных без них.
+     */
+    public static List<String> roles(Claims claims) {
+        Object roles = claims.get(ROLES_CLAIM);
+        if (!(roles instanceof Collection<?> values)) {
             return null;
         }
+        return values.stream().map(String::valueOf).toList();
     }
 
     /**
-     * Создает JWT токен с указанными claims
+     * Идентификатор токена (jti) из проверенных claims; null у токенов, выпущенных без него.
+     */
+    public static String tokenId(Claims claims) {
+        return claims.getId();
+    }
+
+    /**
+     * Момент истечения токена из проверенных claims.
+     */
+    public static LocalDateTime expiresAt(Claims claims) {
+        return LocalDateTime.ofInstant(claims.getExpiration().toInstant(), ZoneId.systemDefault());
+    }
+
+    private static Long longClaim(Claims claims, String name) {
+        Object value = claims.get(name);
+        if (value instanceof Integer) {
+            return ((Integer) value).longValue();
+        } else if (value instanceof Long) {
+            return (Long) value;
+        }
+        return null;
+    }
+
+    /**
+     * Создает JWT токен с указанными claims и уникальным jti, по которому токен можно отозвать
      */
     private String createToken(Map<String, Object> claims, String subject) {
         Date now = new Date();
@@ -79,13 +190,34 @@ public class JwtUtil {
 
         return Jwts.builder()
                 .claims(claims)
+                .id(UUID.randomUUID().toString())
                 .subject(subject)
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey(), Jwts.SIG.HS256)
+                .signWith(signingKey, Jwts.SIG.HS256)
                 .compact();
     }
 
+    /**
+     * Проверяет подпись и срок действия токена и возвращает его claims.
+     * Для недействительного токена возвращает пустой Optional.
+     */
+    public Optional<Claims> parseToken(String token) {
+        if (!verifiedCacheEnabled) {
+            return verify(token);
+        }
+        String tokenHash = hash(token);
+        Claims cached = verifiedTokens.getIfPresent(tokenHash);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<Claims> claims = verify(token);
+        // Токены без exp не кэшируем: срок жизни записи берется из exp
+        claims.filter(verified -> verified.getExpiration() != null)
+                .ifPresent(verified -> verifiedTokens.put(tokenHash, verified));
+        return claims;
+    }
+
     /**
      * Извлекает username из токена
      */
@@ -104,64 +236,42 @@ public class JwtUtil {
      * Извлекает конкретный claim из токена
      */
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
-    }
-
-    /**
-     * Извлекает все claims из токена
-     */
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-    }
-
-    /**
-     * Проверяет, истек ли токен
-     */
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return parseToken(token)
+                .map(claimsResolver)
+                .orElseThrow(() -> new JwtException("Invalid JWT token"));
     }
 
     /**
      * Валидирует токен для конкретного пользователя
      */
     public Boolean validateToken(String token, UserDetails userDetails) {
-        try {
-            final String username = extractUsername(token);
-            return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
-        } catch (JwtException | IllegalArgumentException e) {
-            log.error("JWT token validation failed: {}", e.getMessage());
-            return false;
-        }
+        return parseToken(token)
+                .map(claims -> userDetails.getUsername().equals(claims.getSubject()))
+                .orElse(false);
     }
 
     /**
      * Валидирует токен (общая проверка)
      */
     public Boolean validateToken(String token) {
+        return parseToken(token).isPresent();
+    }
+
+    private Optional<Claims> verify(String token) {
         try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token);
-            return true;
+            return Optional.of(parser.parseSignedClaims(token).getPayload());
         } catch (JwtException | IllegalArgumentException e) {
             log.error("JWT token validation failed: {}", e.getMessage());
-            return false;
+            return Optional.empty();
         }
     }
 
-    private String extractTokenFromAuthentication(Authentication authentication) {
-        if (authentication instanceof UsernamePasswordAuthenticationToken) {
-            Object credentials = authentication.getCredentials();
-            if (credentials instanceof String) {
-                return (String) credentials;
-            }
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
         }
-        throw new IllegalArgumentException("Cannot extract token from authentication");
     }
 }
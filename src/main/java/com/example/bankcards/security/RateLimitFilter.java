@@ -0,0 +1,202 @@
+package com.example.bankcards.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограничение частоты запросов по маршрутам (rate-limit.routes) на пользователя или IP.
+ * Стоит в цепочке безопасности после JwtAuthenticationFilter, чтобы знать id пользователя.
+ * Корзина токенов хранится как одно AtomicLong (GCRA: теоретическое время следующего запроса) и списывается
+ * CAS без блокировок; корзины маршрута лежат в ограниченном по размеру кэше Caffeine (ConcurrentHashMap внутри).
+ * Истечение по времени у кэша не включено, чтобы не читать часы и не вести таймеры на каждом запросе:
+ * полные корзины (их можно создать заново без потери состояния) удаляются по расписанию.
+ * Сверх лимита отвечает 429 с Retry-After. Метрики: rate-limit.rejected и rate-limit.keys с тегом route.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final RateLimitProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    private RouteLimiter[] limiters;
+
+    @PostConstruct
+    void init() {
+        List<RateLimitProperties.Route> routes = properties.isEnabled() ? properties.getRoutes() : List.of();
+        limiters = routes.stream()
+                .map(route -> new RouteLimiter(route, properties.getMaximumKeys(), meterRegistry))
+                .toArray(RouteLimiter[]::new);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        RouteLimiter limiter = match(request);
+        if (limiter != null) {
+            long retryAfterNanos = limiter.tryAcquire(key(limiter.keyType, request));
+            if (retryAfterNanos > 0) {
+                limiter.rejected.increment();
+                reject(request, response, retryAfterNanos);
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Удаляет полные корзины: они не отличаются от новых.
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.cleanup-interval:PT1M}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        for (RouteLimiter limiter : limiters) {
+            limiter.buckets.asMap().values().removeIf(theoreticalArrival -> theoreticalArrival.get() - now <= 0);
+        }
+    }
+
+    private RouteLimiter match(HttpServletRequest request) {
+        if (limiters.length == 0) {
+            return null;
+        }
+        String method = request.getMethod();
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (RouteLimiter limiter : limiters) {
+            if (limiter.matches(method, path)) {
+                return limiter;
+            }
+        }
+        return null;
+    }
+
+    private static Object key(RateLimitProperties.KeyType keyType, HttpServletRequest request) {
+        if (keyType == RateLimitProperties.KeyType.USER) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+                return user.userId();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static void reject(HttpServletRequest request, HttpServletResponse response,
+                               long retryAfterNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + 999_999_999L));
+        log.debug("Rate limit exceeded for {} {} from {}", request.getMethod(), request.getRequestURI(),
+                request.getRemoteAddr());
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("timestamp", LocalDateTime.now().toString());
+        body.put("status", HttpStatus.TOO_MANY_REQUESTS.value());
+        body.put("error", HttpStatus.TOO_MANY_REQUESTS.getReasonPhrase());
+        body.put("message", "Too many requests, retry in " + retryAfterSeconds + " s");
+        MAPPER.writeValue(response.getOutputStream(), body);
+    }
+
+    /**
+     * Лимит одного маршрута: правило сопоставления, корзины по ключам и счетчик отказов.
+     */
+    static final class RouteLimiter {
+
+        private final String method;
+        private final String path;
+        private final boolean prefix;
+        private final RateLimitProperties.KeyType keyType;
+        private final long intervalNanos;
+        private final long periodNanos;
+        private final Cache<Object, AtomicLong> buckets;
+        private final Counter rejected;
+
+        RouteLimiter(RateLimitProperties.Route route, long maximumKeys, MeterRegistry meterRegistry) {
+            if (!StringUtils.hasText(route.getPath()) || route.getLimit() <= 0
+                    || route.getPeriod() == null || route.getPeriod().isNegative() || route.getPeriod().isZero()) {
+                throw new IllegalStateException("Invalid rate limit route: " + route);
+            }
+            this.method = StringUtils.hasText(route.getMethod()) ? route.getMethod() : null;
+            this.prefix = route.getPath().endsWith("/**");
+            this.path = prefix ? route.getPath().substring(0, route.getPath().length() - 3) : route.getPath();
+            this.keyType = route.getKey();
+            this.periodNanos = route.getPeriod().toNanos();
+            this.intervalNanos = Math.max(1, periodNanos / route.getLimit());
+            this.buckets = Caffeine.newBuilder()
+                    .maximumSize(maximumKeys)
+                    .build();
+
+            String name = StringUtils.hasText(route.getName()) ? route.getName() : route.getPath();
+            this.rejected = Counter.builder("rate-limit.rejected")
+                    .tag("route", name)
+                    .register(meterRegistry);
+            Gauge.builder("rate-limit.keys", buckets, Cache::estimatedSize)
+                    .tag("route", name)
+                    .register(meterRegistry);
+        }
+
+        boolean matches(String requestMethod, String requestPath) {
+            if (method != null && !method.equals(requestMethod)) {
+                return false;
+            }
+            if (!prefix) {
+                return path.equals(requestPath);
+            }
+            return requestPath.startsWith(path)
+                    && (requestPath.length() == path.length() || requestPath.charAt(path.length()) == '/');
+        }
+
+        /**
+         * Списывает токен из корзины ключа. Возвращает 0, если запрос разрешен, иначе через сколько наносекунд
+         * освободится токен. Корзина полна, когда теоретическое время следующего запроса не позже текущего;
+         * каждый запрос сдвигает его на interval, а запрос отклоняется, если сдвиг ушел дальше, чем на period.
+         */
+        long tryAcquire(Object key) {
+            long now = System.nanoTime();
+            AtomicLong theoreticalArrival = buckets.get(key, k -> new AtomicLong(now));
+            while (true) {
+                long current = theoreticalArrival.get();
+                long next = Math.max(current, now) + intervalNanos;
+                long excess = next - now - periodNanos;
+                if (excess > 0) {
+                    return excess;
+                }
+                if (theoreticalArrival.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.bankcards.security;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Настройки RateLimitFilter (rate-limit.*). Для каждого маршрута задается лимит запросов за период:
+ * до limit запросов подряд, дальше — по одному каждые period / limit.
+ */
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+@Data
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Максимальное число ключей (пользователей или IP) на маршрут; при переполнении вытесняются редкие.
+     */
+    private long maximumKeys = 100_000;
+
+    private List<Route> routes = new ArrayList<>();
+
+    @Data
+    public static class Route {
+
+        /**
+         * Имя маршрута для тега метрик.
+         */
+        private String name;
+
+        /**
+         * HTTP-метод; пустой — любой.
+         */
+        private String method;
+
+        /**
+         * Путь целиком или префикс с окончанием /**.
+         */
+        private String path;
+
+        private KeyType key = KeyType.USER;
+
+        private int limit;
+
+        private Duration period;
+    }
+
+    /**
+     * По чему считается лимит. USER — id аутентифицированного пользователя, для анонимных запросов IP.
+     */
+    public enum KeyType {
+        USER, IP
+    }
+}
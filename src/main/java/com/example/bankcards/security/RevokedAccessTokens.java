@@ -0,0 +1,125 @@
+package com.example.bankcards.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отозванные до истечения срока access-токены (выход из системы). JwtAuthenticationFilter проверяет jti
+ * только по памяти: сначала фильтр Блума, и лишь при его срабатывании — точное множество,
+ * так что проверка не обращается к базе. Таблица revoked_access_tokens хранит отзывы для перезапуска
+ * и других экземпляров: изменения подтягиваются по расписанию (jwt.revocation.sync-interval)
+ * с перекрытием окна, истекшие записи удаляются, а фильтр перестраивается без них.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RevokedAccessTokens {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${jwt.revocation.expected-tokens:100000}")
+    private long expectedTokens;
+
+    @Value("${jwt.revocation.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${jwt.revocation.sync-overlap:PT1M}")
+    private Duration syncOverlap;
+
+    private final Map<String, LocalDateTime> revoked = new ConcurrentHashMap<>();
+    private volatile RevocationBloomFilter filter;
+    private long filterCapacity;
+    private LocalDateTime syncedUntil = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    @PostConstruct
+    void init() {
+        rebuild();
+        Gauge.builder("jwt.revoked.tokens", revoked, Map::size)
+                .description("Revoked access tokens that have not expired yet")
+                .register(meterRegistry);
+        sync();
+    }
+
+    /**
+     * Отозван ли токен с данным jti. Не обращается к базе.
+     */
+    public boolean isRevoked(String tokenId) {
+        return filter.mightContain(tokenId) && revoked.containsKey(tokenId);
+    }
+
+    /**
+     * Отзывает токен до момента его истечения: сохраняет отзыв в базе и сразу учитывает на этом экземпляре.
+     */
+    public void revoke(String tokenId, LocalDateTime expiresAt) {
+        try {
+            jdbcTemplate.update("INSERT INTO revoked_access_tokens (jti, expires_at, revoked_at) VALUES (?, ?, ?)",
+                    tokenId, Timestamp.valueOf(expiresAt), Timestamp.valueOf(LocalDateTime.now()));
+        } catch (DuplicateKeyException e) {
+            log.debug("Access token {} is already revoked", tokenId);
+        }
+        add(tokenId, expiresAt);
+    }
+
+    /**
+     * Подтягивает отзывы, сделанные с прошлой синхронизации (в том числе на других экземплярах),
+     * и забывает истекшие. Окно сдвигается с перекрытием, чтобы не пропустить поздно закоммиченные строки.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.sync-interval:PT5S}")
+    public synchronized void sync() {
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.query("SELECT jti, expires_at FROM revoked_access_tokens WHERE revoked_at >= ? AND expires_at > ?",
+                (RowCallbackHandler) rs -> add(rs.getString("jti"), rs.getTimestamp("expires_at").toLocalDateTime()),
+                Timestamp.valueOf(syncedUntil), Timestamp.valueOf(now));
+        syncedUntil = now.minus(syncOverlap);
+
+        if (revoked.values().removeIf(expiresAt -> expiresAt.isBefore(now))) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Удаляет из таблицы отзывы истекших токенов: такие токены отклоняются и без них.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.cleanup-interval:PT10M}")
+    public void deleteExpired() {
+        int deleted = jdbcTemplate.update("DELETE FROM revoked_access_tokens WHERE expires_at < ?",
+                Timestamp.valueOf(LocalDateTime.now()));
+        if (deleted > 0) {
+            log.info("Deleted {} expired revoked access tokens", deleted);
+        }
+    }
+
+    private synchronized void add(String tokenId, LocalDateTime expiresAt) {
+        revoked.put(tokenId, expiresAt);
+        // Фильтр рассчитан на filterCapacity элементов; при переполнении строится новый, вдвое больше
+        if (revoked.size() > filterCapacity) {
+            rebuild();
+        } else {
+            filter.put(tokenId);
+        }
+    }
+
+    private synchronized void rebuild() {
+        long capacity = Math.max(expectedTokens, revoked.size() * 2L);
+        RevocationBloomFilter rebuilt = new RevocationBloomFilter(capacity, falsePositiveRate);
+        revoked.keySet().forEach(rebuilt::put);
+        filter = rebuilt;
+        filterCapacity = capacity;
+    }
+}
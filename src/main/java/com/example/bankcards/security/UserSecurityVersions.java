@@ -0,0 +1,88 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Текущие версии безопасности пользователей (users.security_version) в памяти.
+ * JwtAuthenticationFilter сверяет с ними claim ver токена, поэтому запросы не читают пользователя из базы:
+ * версия загружается одним запросом при первом обращении и держится до истечения TTL.
+ * UserService обновляет запись после коммита изменения, и на этом экземпляре отзыв токенов действует сразу;
+ * остальные экземпляры приложения увидят новую версию не позже чем через TTL.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserSecurityVersions {
+
+    /**
+     * Версия удаленного пользователя: с ней не совпадет ни один токен.
+     */
+    static final long DELETED = -1L;
+
+    private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${jwt.security-versions.maximum-size:100000}")
+    private long maximumSize;
+
+    @Value("${jwt.security-versions.ttl:PT1M}")
+    private Duration ttl;
+
+    private Cache<Long, Long> versions;
+
+    @PostConstruct
+    void init() {
+        versions = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, versions, "jwt.security-versions");
+    }
+
+    /**
+     * Совпадает ли версия из токена с текущей версией пользователя.
+     */
+    public boolean isCurrent(Long userId, long tokenVersion) {
+        long current = versions.get(userId, id -> userRepository.findSecurityVersionById(id).orElse(DELETED));
+        return current != DELETED && current == tokenVersion;
+    }
+
+    /**
+     * Запоминает новую версию после коммита текущей транзакции (или сразу, если транзакции нет).
+     */
+    public void updateAfterCommit(Long userId, long version) {
+        afterCommit(() -> versions.put(userId, version));
+    }
+
+    /**
+     * Отзывает все токены удаленного пользователя после коммита.
+     */
+    public void removeAfterCommit(Long userId) {
+        afterCommit(() -> versions.put(userId, DELETED));
+    }
+
+    private static void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
+    }
+}
@@ -3,57 +3,129 @@ package com.example.bankcards.service;
 import com.example.bankcards.dto.AuthRequest;
 import com.example.bankcards.dto.AuthResponse;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.ServiceBusyException;
+import com.example.bankcards.security.AuthenticatedUser;
 import com.example.bankcards.security.JwtUtil;
+import com.example.bankcards.security.PasswordHasher;
+import com.example.bankcards.security.RevokedAccessTokens;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * Вход по имени и паролю. Пользователь с ролями загружается один раз, пароль проверяется
+ * на пуле PasswordHasher, а не в потоке запроса. Если хэш посчитан с меньшей стоимостью,
+ * чем настроенная сейчас, он пересчитывается и сохраняется.
+ * Вместе с короткоживущим access-токеном выдается refresh-токен: обмен его на новую пару
+ * не проверяет пароль, а выход отзывает текущий access-токен и цепочку refresh-токенов.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AuthService {
 
-    private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtUtil;
     private final UserService userService;
+    private final PasswordHasher passwordHasher;
+    private final RefreshTokenService refreshTokenService;
+    private final RevokedAccessTokens revokedAccessTokens;
 
     public AuthResponse authenticate(AuthRequest authRequest) {
         log.info("Authenticating user: {}", authRequest.getUsername());
 
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        authRequest.getUsername(),
-                        authRequest.getPassword()
-                )
-        );
+        User user = userService.findUserByUsername(authRequest.getUsername()).orElse(null);
+        // Для неизвестного имени пароль сверяется с фиктивным хэшем, чтобы время ответа было тем же
+        if (!passwordHasher.matches(authRequest.getPassword(), user != null ? user.getPassword() : null)) {
+            throw new BadCredentialsException("Bad credentials");
+        }
+        if (!user.getEnabled()) {
+            throw new DisabledException("User is disabled");
+        }
 
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
+        rehashIfNeeded(user, authRequest.getPassword());
 
-        User user = userService.getUserByUsername(authRequest.getUsername());
+        AuthResponse response = buildResponse(user, refreshTokenService.issue(user.getId(), user.getSecurityVersion()));
 
-        String jwt = jwtUtil.generateToken(userDetails, user.getId());
+        log.info("User authenticated successfully: {}", authRequest.getUsername());
+
+        return response;
+    }
+
+    /**
+     * Обменивает refresh-токен на новую пару токенов. Токен, выданный до блокировки пользователя,
+     * смены его пароля или ролей, отклоняется. Ротация и загрузка пользователя идут в одной транзакции;
+     * отзыв цепочки при повторном предъявлении токена сохраняется и при ошибке.
+     */
+    @Transactional(noRollbackFor = BadCredentialsException.class)
+    public AuthResponse refresh(String refreshToken) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshToken);
+        User user = userService.getUserById(rotation.userId());
+        if (!user.getEnabled() || user.getSecurityVersion() != rotation.securityVersion()) {
+            throw new BadCredentialsException("Refresh token revoked");
+        }
+        return buildResponse(user, rotation.refreshToken());
+    }
+
+    /**
+     * Выход: отзывает access-токен запроса и, если передан, refresh-токен вместе с его цепочкой.
+     */
+    public void logout(AuthenticatedUser principal, String refreshToken) {
+        if (principal.tokenId() != null) {
+            revokedAccessTokens.revoke(principal.tokenId(), principal.tokenExpiresAt());
+        }
+        if (refreshToken != null) {
+            refreshTokenService.revoke(refreshToken);
+        }
+        log.info("User {} logged out", principal.userId());
+    }
 
-        Set<String> roles = userDetails.getAuthorities().stream()
-                .map(GrantedAuthority::getAuthority)
+    private AuthResponse buildResponse(User user, String refreshToken) {
+        Set<String> roles = user.getRoles().stream()
+                .map(role -> role.getName().name())
                 .collect(Collectors.toSet());
 
-        log.info("User authenticated successfully: {}", authRequest.getUsername());
+        UserDetails userDetails = org.springframework.security.core.userdetails.User.builder()
+                .username(user.getUsername())
+                .password(user.getPassword())
+                .authorities(roles.stream().map(SimpleGrantedAuthority::new).toList())
+                .build();
+
+        String jwt = jwtUtil.generateToken(userDetails, user.getId(), user.getSecurityVersion());
 
         return AuthResponse.builder()
                 .token(jwt)
                 .type("Bearer")
+                .expiresIn(jwtUtil.getAccessTokenTtl().toSeconds())
+                .refreshToken(refreshToken)
                 .id(user.getId())
                 .username(user.getUsername())
                 .email(user.getEmail())
                 .roles(roles)
                 .build();
     }
+
+    private void rehashIfNeeded(User user, String rawPassword) {
+        if (!passwordHasher.upgradeEncoding(user.getPassword())) {
+            return;
+        }
+        try {
+            if (userService.updatePasswordHash(user.getId(), user.getPassword(), passwordHasher.encode(rawPassword))) {
+                log.info("Rehashed password of user {} with the configured cost", user.getId());
+            } else {
+                // Пароль сменили после проверки: новый хэш уже посчитан с текущей стоимостью
+                log.info("Skipped password rehash of user {}: password was changed concurrently", user.getId());
+            }
+        } catch (ServiceBusyException e) {
+            // Вход уже подтвержден; хэш пересчитается при одном из следующих входов
+            log.warn("Skipped password rehash of user {}: {}", user.getId(), e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,121 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Локальный кэш карт для частых опросов с мобильных клиентов: CardDto по id и списки id карт владельца.
+ * Записи вытесняются по размеру и по TTL, а изменения карт удаляют их точно, после коммита изменившей транзакции.
+ * Загрузка одной записи атомарна: удаление, пришедшее во время загрузки, дождется ее и удалит результат.
+ * Пакетная загрузка страницы такой гарантии не дает, там устаревшее значение живет не дольше TTL.
+ * Метрики: cache.gets (hit/miss), cache.evictions, cache.size с тегом cache=cards.by-id или cards.by-owner.
+ */
+@Component
+@RequiredArgsConstructor
+public class CardCache {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${card.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${card.cache.maximum-size:100000}")
+    private long maximumSize;
+
+    @Value("${card.cache.ttl:PT30S}")
+    private Duration ttl;
+
+    private Cache<Long, CardDto> cardsById;
+    private Cache<Long, List<Long>> cardIdsByOwner;
+
+    @PostConstruct
+    void init() {
+        cardsById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        cardIdsByOwner = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cardsById, "cards.by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, cardIdsByOwner, "cards.by-owner");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Карта по id; при промахе вызывает loader. Результат null (карты нет) не кэшируется.
+     */
+    public CardDto getCard(Long cardId, Function<Long, CardDto> loader) {
+        return enabled ? cardsById.get(cardId, loader) : loader.apply(cardId);
+    }
+
+    /**
+     * Карты по id; отсутствующие в кэше загружаются одним вызовом loader.
+     */
+    public Map<Long, CardDto> getCards(Collection<Long> cardIds, Function<Set<Long>, Map<Long, CardDto>> loader) {
+        if (!enabled) {
+            return loader.apply(Set.copyOf(cardIds));
+        }
+        return cardsById.getAll(cardIds, missing -> loader.apply(Set.copyOf(missing)));
+    }
+
+    /**
+     * Id карт владельца в порядке возрастания.
+     */
+    public List<Long> getOwnerCardIds(Long ownerId, Function<Long, List<Long>> loader) {
+        return enabled ? cardIdsByOwner.get(ownerId, loader) : loader.apply(ownerId);
+    }
+
+    /**
+     * Удаляет карты из кэша после коммита текущей транзакции (или сразу, если транзакции нет).
+     */
+    public void evictCardsAfterCommit(Collection<Long> cardIds) {
+        if (enabled) {
+            afterCommit(() -> cardsById.invalidateAll(cardIds));
+        }
+    }
+
+    /**
+     * Удаляет списки карт владельцев после коммита текущей транзакции (или сразу, если транзакции нет).
+     */
+    public void evictOwnersAfterCommit(Collection<Long> ownerIds) {
+        if (enabled) {
+            afterCommit(() -> cardIdsByOwner.invalidateAll(ownerIds));
+        }
+    }
+
+    private static void afterCommit(Runnable eviction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eviction.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                eviction.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.CardRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Переводит просроченные активные карты в EXPIRED set-based UPDATE'ами ограниченного размера,
+ * каждый в своей транзакции, чтобы не держать блокировки на всех картах сразу.
+ * Чтение карт ничего не пишет: до обновления статус вычисляется в Card.effectiveStatus().
+ * Id карт каждой пачки блокируются и выбираются перед UPDATE, чтобы после коммита удалить их из CardCache;
+ * списки карт владельцев от статуса не зависят и не сбрасываются.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CardExpirySweeper {
+
+    private final CardRepository cardRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final CardCache cardCache;
+
+    @Value("${card.expiry-sweep.enabled:true}")
+    private boolean enabled;
+
+    @Value("${card.expiry-sweep.batch-size:1000}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${card.expiry-sweep.interval:PT1H}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        int total = 0;
+        int expired;
+        do {
+            expired = transactionTemplate.execute(status -> expireBatch());
+            total += expired;
+        } while (expired == batchSize);
+
+        if (total > 0) {
+            log.info("Expired {} cards", total);
+        }
+    }
+
+    /**
+     * Возвращает число выбранных карт, а не обновленных, чтобы цикл продолжался, пока пачки полные.
+     */
+    private int expireBatch() {
+        List<Long> cardIds = cardRepository.lockExpiredActiveCardIds(batchSize);
+        if (cardIds.isEmpty()) {
+            return 0;
+        }
+        cardRepository.expireActiveCards(cardIds);
+        cardCache.evictCardsAfterCommit(cardIds);
+        return cardIds.size();
+    }
+}
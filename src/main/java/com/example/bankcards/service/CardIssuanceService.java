@@ -0,0 +1,99 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardBulkIssueSummary;
+import com.example.bankcards.dto.CardCreateDto;
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.BusinessException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Массовый выпуск карт (например, при подключении корпоративного клиента).
+ * Владельцы загружаются одним запросом до начала ответа, затем карты выпускаются частями,
+ * каждая часть в своей транзакции, и выпущенные карты сразу пишутся в ответ в формате NDJSON.
+ * Номера карт части шифруются одним EncryptionUtil.encryptAll, поэтому часть не меньше порога
+ * параллельного шифрования (encryption.parallel-threshold).
+ * Последняя строка ответа — CardBulkIssueSummary. Если часть завершилась ошибкой, ранее выпущенные части
+ * остаются в базе и уже переданы клиенту, а итоговая строка сообщает об ошибке и числе выпущенных карт.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CardIssuanceService {
+
+    private final CardService cardService;
+    private final UserService userService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${card.bulk.chunk-size:2048}")
+    private int chunkSize;
+
+    @Value("${encryption.parallel-threshold:2048}")
+    private int parallelEncryptionThreshold;
+
+    @PostConstruct
+    void init() {
+        if (chunkSize < parallelEncryptionThreshold) {
+            log.warn("card.bulk.chunk-size {} is below encryption.parallel-threshold {}: bulk issuance encrypts "
+                    + "card numbers on a single thread", chunkSize, parallelEncryptionThreshold);
+        }
+    }
+
+    public StreamingResponseBody issueCards(List<CardCreateDto> createDtos) {
+        Map<Long, User> owners = userService.getUsersByIds(
+                createDtos.stream().map(CardCreateDto::getOwnerId).collect(Collectors.toSet()));
+
+        // Сброс в поток делаем после каждой части, а не после каждой карты
+        ObjectWriter writer = objectMapper.writerFor(CardDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        return out -> {
+            log.info("Issuing {} cards for {} owners", createDtos.size(), owners.size());
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            // Каждая карта на отдельной строке
+            generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+            int issued = 0;
+            String error = null;
+            try {
+                for (int from = 0; from < createDtos.size(); from += chunkSize) {
+                    List<CardCreateDto> chunk = createDtos.subList(from, Math.min(createDtos.size(), from + chunkSize));
+                    List<CardDto> cards = transactionTemplate.execute(status -> cardService.createCards(chunk, owners));
+                    for (CardDto card : cards) {
+                        writer.writeValue(generator, card);
+                    }
+                    generator.flush();
+                    issued += cards.size();
+                }
+            } catch (RuntimeException e) {
+                // Статус 201 уже отправлен: сообщаем об ошибке итоговой строкой, выпущенные части остаются в базе
+                log.error("Bulk issuance stopped after {} of {} cards", issued, createDtos.size(), e);
+                error = e instanceof BusinessException ? e.getMessage() : "Card issuance failed";
+            }
+            objectMapper.writeValue(generator, CardBulkIssueSummary.builder()
+                    .complete(error == null)
+                    .requested(createDtos.size())
+                    .issued(issued)
+                    .error(error)
+                    .build());
+            generator.writeRaw('\n');
+            generator.flush();
+            log.info("Issued {} of {} cards", issued, createDtos.size());
+        };
+    }
+}
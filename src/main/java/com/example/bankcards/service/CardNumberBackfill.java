@@ -0,0 +1,109 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.util.CardFingerprintUtil;
+import com.example.bankcards.util.EncryptionUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Заполняет производные от номера столбцы (card_number_fingerprint, pan_last4) у карт, выпущенных до их появления.
+ * Номера расшифровываются пачками, каждая пачка обновляется одним пакетным UPDATE в своей транзакции.
+ * Несколько узлов могут работать одновременно: значения детерминированы, повторная запись ничего не меняет.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CardNumberBackfill {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EncryptionUtil encryptionUtil;
+    private final CardFingerprintUtil cardFingerprintUtil;
+
+    @Value("${encryption.card-number-backfill.enabled:true}")
+    private boolean enabled;
+
+    @Value("${encryption.card-number-backfill.batch-size:500}")
+    private int batchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!enabled) {
+            return;
+        }
+        int total = 0;
+        long lastId = 0;
+        List<Map<String, Object>> rows;
+        do {
+            long afterId = lastId;
+            rows = jdbcTemplate.queryForList("""
+                    SELECT id, card_number FROM cards
+                    WHERE (card_number_fingerprint IS NULL OR pan_last4 IS NULL) AND id > ?
+                    ORDER BY id
+                    LIMIT ?
+                    """, afterId, batchSize);
+            if (!rows.isEmpty()) {
+                List<Map<String, Object>> batch = rows;
+                total += transactionTemplate.execute(status -> backfillBatch(batch));
+                lastId = ((Number) rows.get(rows.size() - 1).get("id")).longValue();
+            }
+        } while (rows.size() == batchSize);
+
+        if (total > 0) {
+            log.info("Backfilled card number fingerprint and last 4 digits for {} cards", total);
+        }
+    }
+
+    private int backfillBatch(List<Map<String, Object>> rows) {
+        List<Object[]> updates = new ArrayList<>(rows.size());
+        List<String> numbers = decrypt(rows);
+        for (int i = 0; i < rows.size(); i++) {
+            String number = numbers.get(i);
+            if (number != null) {
+                updates.add(new Object[]{
+                        cardFingerprintUtil.fingerprint(number),
+                        number.substring(number.length() - 4),
+                        rows.get(i).get("id")});
+            }
+        }
+        jdbcTemplate.batchUpdate("""
+                UPDATE cards
+                SET card_number_fingerprint = COALESCE(card_number_fingerprint, ?),
+                    pan_last4 = COALESCE(pan_last4, ?)
+                WHERE id = ?
+                """, updates);
+        return updates.size();
+    }
+
+    /**
+     * Расшифровывает номера пачкой; если в пачке есть поврежденный номер, расшифровывает по одному
+     * и пропускает такие карты, чтобы они не останавливали заполнение остальных.
+     */
+    private List<String> decrypt(List<Map<String, Object>> rows) {
+        List<String> encrypted = rows.stream().map(row -> (String) row.get("card_number")).toList();
+        try {
+            return encryptionUtil.decryptAll(encrypted);
+        } catch (RuntimeException e) {
+            List<String> numbers = new ArrayList<>(rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                try {
+                    numbers.add(encryptionUtil.decrypt(encrypted.get(i)));
+                } catch (RuntimeException rowFailure) {
+                    log.warn("Cannot decrypt number of card {}, derived columns are left empty", rows.get(i).get("id"));
+                    numbers.add(null);
+                }
+            }
+            return numbers;
+        }
+    }
+}
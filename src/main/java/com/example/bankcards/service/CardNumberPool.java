@@ -0,0 +1,228 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.CardFingerprintUtil;
+import com.example.bankcards.util.CardNumberGenerator;
+import com.example.bankcards.util.EncryptionUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Stream;
+
+/**
+ * Пул заранее выпущенных номеров карт.
+ * Фоновая задача держит ограниченную очередь номеров, уже проверенных на уникальность, зашифрованных вместе с CVV
+ * и зарезервированных в card_number_reservations, поэтому выпуск карты забирает готовый номер без генерации,
+ * шифрования и обращений к базе. Резерв по первичному ключу не дает узлам выдать один и тот же номер.
+ * Номер выдается, пока его резерв моложе reservation-ttl; строки резервов удаляются после выпуска карты
+ * или, если узел остановился аварийно, по истечении двух сроков.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CardNumberPool {
+
+    private final CardRepository cardRepository;
+    private final CardNumberGenerator cardNumberGenerator;
+    private final CardFingerprintUtil cardFingerprintUtil;
+    private final EncryptionUtil encryptionUtil;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${card.number-pool.enabled:false}")
+    private boolean enabled;
+
+    @Value("${card.number-pool.capacity:1000}")
+    private int capacity;
+
+    @Value("${card.number-pool.refill-batch-size:200}")
+    private int refillBatchSize;
+
+    @Value("${card.number-pool.reservation-ttl:PT24H}")
+    private Duration reservationTtl;
+
+    private BlockingQueue<PooledCardNumber> queue;
+    private Counter refilled;
+    private Counter taken;
+    private Counter misses;
+
+    public record PooledCardNumber(String encryptedCardNumber, String fingerprint, String panLast4,
+                                   String encryptedCvv, LocalDateTime reservedAt) {
+    }
+
+    @PostConstruct
+    void init() {
+        queue = new ArrayBlockingQueue<>(capacity);
+        Gauge.builder("card.number.pool.depth", queue, Collection::size)
+                .description("Card numbers ready for issuance")
+                .register(meterRegistry);
+        refilled = Counter.builder("card.number.pool.refilled")
+                .description("Card numbers added to the pool")
+                .register(meterRegistry);
+        taken = Counter.builder("card.number.pool.taken")
+                .description("Cards issued with a pooled number")
+                .register(meterRegistry);
+        misses = Counter.builder("card.number.pool.misses")
+                .description("Cards issued with an inline generated number because the pool was drained")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Забирает готовый номер. Пустой результат означает, что пул выключен или исчерпан
+     * и номер нужно сгенерировать на месте.
+     */
+    public Optional<PooledCardNumber> take() {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        LocalDateTime expiredBefore = LocalDateTime.now().minus(reservationTtl);
+        PooledCardNumber pooled;
+        while ((pooled = queue.poll()) != null) {
+            if (pooled.reservedAt().isAfter(expiredBefore)) {
+                taken.increment();
+                return Optional.of(pooled);
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Зарезервирован ли номер пулом какого-либо узла. При выключенном пуле резервов нет.
+     */
+    public boolean isReserved(String fingerprint) {
+        return !findReserved(List.of(fingerprint)).isEmpty();
+    }
+
+    /**
+     * Отпечатки из переданных, которые зарезервированы пулом какого-либо узла.
+     */
+    public Set<String> findReserved(Collection<String> fingerprints) {
+        if (!enabled || fingerprints.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT fingerprint FROM card_number_reservations WHERE fingerprint IN (:fingerprints)",
+                Map.of("fingerprints", fingerprints), String.class));
+    }
+
+    /**
+     * Пополняет очередь: номера генерируются пачкой, отбрасываются уже выпущенные и зарезервированные,
+     * остальные резервируются одним пакетным INSERT и шифруются пакетом.
+     */
+    @Scheduled(fixedDelayString = "${card.number-pool.refill-interval:PT1S}")
+    public synchronized void refill() {
+        if (!enabled) {
+            return;
+        }
+        int count = Math.min(queue.remainingCapacity(), refillBatchSize);
+        if (count == 0) {
+            return;
+        }
+
+        // Отпечаток -> номер; совпадения внутри пачки схлопываются
+        Map<String, String> cardNumbers = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String cardNumber = cardNumberGenerator.generateCardNumber();
+            cardNumbers.put(cardFingerprintUtil.fingerprint(cardNumber), cardNumber);
+        }
+        cardNumbers.keySet().removeAll(cardRepository.findExistingFingerprints(cardNumbers.keySet()));
+        cardNumbers.keySet().removeAll(findReserved(cardNumbers.keySet()));
+        if (cardNumbers.isEmpty()) {
+            return;
+        }
+
+        List<String> fingerprints = new ArrayList<>(cardNumbers.keySet());
+        LocalDateTime reservedAt = LocalDateTime.now();
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.getJdbcTemplate().batchUpdate(
+                    "INSERT INTO card_number_reservations (fingerprint, reserved_at) VALUES (?, ?)",
+                    fingerprints.stream()
+                            .map(fingerprint -> new Object[]{fingerprint, Timestamp.valueOf(reservedAt)})
+                            .toList()));
+        } catch (DataIntegrityViolationException e) {
+            // Другой узел успел зарезервировать один из номеров; пачка откатилась целиком, повторим при следующем запуске
+            log.warn("Card number reservation conflict, refill postponed: {}", e.getMessage());
+            return;
+        }
+
+        List<String> plainNumbers = new ArrayList<>(cardNumbers.values());
+        List<String> encryptedNumbers = encryptionUtil.encryptAll(plainNumbers);
+        List<String> encryptedCvvs = encryptionUtil.encryptAll(
+                Stream.generate(cardNumberGenerator::generateCVV).limit(plainNumbers.size()).toList());
+        for (int i = 0; i < plainNumbers.size(); i++) {
+            String cardNumber = plainNumbers.get(i);
+            // Пополняет только этот метод, поэтому места в очереди хватает
+            queue.add(new PooledCardNumber(encryptedNumbers.get(i), fingerprints.get(i),
+                    cardNumber.substring(cardNumber.length() - 4), encryptedCvvs.get(i), reservedAt));
+        }
+        refilled.increment(plainNumbers.size());
+        log.debug("Card number pool refilled with {} numbers, depth {}", plainNumbers.size(), queue.size());
+    }
+
+    /**
+     * Удаляет резервы номеров, уже присвоенных картам, и резервы, брошенные остановленными узлами.
+     */
+    @Scheduled(fixedDelayString = "${card.number-pool.cleanup-interval:PT5M}")
+    public void cleanup() {
+        if (!enabled) {
+            return;
+        }
+        int issued = jdbcTemplate.getJdbcTemplate().update("""
+                DELETE FROM card_number_reservations
+                WHERE EXISTS (SELECT 1 FROM cards c WHERE c.card_number_fingerprint = card_number_reservations.fingerprint)
+                """);
+        // Двойной срок оставляет запас картам, которые выпускаются с номером, взятым у самой границы срока
+        int abandoned = jdbcTemplate.getJdbcTemplate().update(
+                "DELETE FROM card_number_reservations WHERE reserved_at < ?",
+                Timestamp.valueOf(LocalDateTime.now().minus(reservationTtl.multipliedBy(2))));
+        if (issued + abandoned > 0) {
+            log.debug("Removed {} issued and {} abandoned card number reservations", issued, abandoned);
+        }
+    }
+
+    /**
+     * Освобождает резервы номеров, оставшихся в очереди при остановке.
+     */
+    @PreDestroy
+    void release() {
+        List<PooledCardNumber> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        List<String> fingerprints = remaining.stream().map(PooledCardNumber::fingerprint).toList();
+        if (fingerprints.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("DELETE FROM card_number_reservations WHERE fingerprint IN (:fingerprints)",
+                    Map.of("fingerprints", fingerprints));
+        } catch (DataAccessException e) {
+            log.warn("Unable to release {} card number reservations: {}", fingerprints.size(), e.getMessage());
+        }
+    }
+}
@@ -2,35 +2,67 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.dto.CardCreateDto;
 import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardOwnerView;
+import com.example.bankcards.dto.CardView;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.BusinessException;
 import com.example.bankcards.exception.CardBlockedException;
 import com.example.bankcards.exception.ResourceNotFoundException;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.CardFingerprintUtil;
 import com.example.bankcards.util.CardMaskingUtil;
 import com.example.bankcards.util.CardNumberGenerator;
 import com.example.bankcards.util.EncryptionUtil;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CardService {
 
+    private static final int MAX_CARD_NUMBER_ATTEMPTS = 10;
+
     private final CardRepository cardRepository;
     private final UserService userService;
     private final EncryptionUtil encryptionUtil;
+    private final CardFingerprintUtil cardFingerprintUtil;
     private final CardMaskingUtil cardMaskingUtil;
     private final CardNumberGenerator cardNumberGenerator;
+    private final CardNumberPool cardNumberPool;
+    private final CardCache cardCache;
+    private final PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    void init() {
+        // Чтения через кэш открывают транзакцию только при промахе
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
 
     @Transactional
     public CardDto createCard(CardCreateDto createDto) {
@@ -38,69 +70,169 @@ public class CardService {
 
         User owner = userService.getUserById(createDto.getOwnerId());
 
+        // Готовый номер из пула; если пул выключен или исчерпан, генерируем на месте
+        Card card = cardNumberPool.take()
+                .map(pooled -> buildCard(createDto, owner, pooled.panLast4(), pooled.fingerprint(),
+                        pooled.encryptedCardNumber(), pooled.encryptedCvv()))
+                .orElseGet(() -> generateCard(createDto, owner));
+
+        Card savedCard = cardRepository.save(card);
+        log.info("Card created successfully with id: {}", savedCard.getId());
+        cardCache.evictOwnersAfterCommit(List.of(owner.getId()));
+
+        return mapToDto(savedCard);
+    }
+
+    /**
+     * Выпуск пачки карт. Номера генерируются заранее, коллизии проверяются одним запросом IN,
+     * повторно генерируются только совпавшие номера. Номера и CVV шифруются пакетом,
+     * вставка идет батчами (id берутся из последовательности с пулом).
+     * Владельцы загружаются вызывающим кодом заранее. Вызывать внутри транзакции.
+     */
+    List<CardDto> createCards(List<CardCreateDto> createDtos, Map<Long, User> owners) {
+        int size = createDtos.size();
+        List<String> cardNumbers = new ArrayList<>(size);
+        List<String> fingerprints = new ArrayList<>(size);
+        List<String> cvvs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String cardNumber = cardNumberGenerator.generateCardNumber();
+            cardNumbers.add(cardNumber);
+            fingerprints.add(cardFingerprintUtil.fingerprint(cardNumber));
+            cvvs.add(cardNumberGenerator.generateCVV());
+        }
+
+        // Проверяем уникальность всей пачки одним запросом; повторяем только для совпавших номеров
+        Set<String> accepted = new HashSet<>(size * 2);
+        List<Integer> pending = IntStream.range(0, size).boxed().toList();
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            if (attempt > MAX_CARD_NUMBER_ATTEMPTS) {
+                throw new BusinessException("Unable to generate unique card numbers");
+            }
+            List<String> checked = pending.stream().map(fingerprints::get).toList();
+            Set<String> taken = new HashSet<>(cardRepository.findExistingFingerprints(checked));
+            taken.addAll(cardNumberPool.findReserved(checked));
+            List<Integer> colliding = new ArrayList<>();
+            for (int i : pending) {
+                String fingerprint = fingerprints.get(i);
+                if (taken.contains(fingerprint) || !accepted.add(fingerprint)) {
+                    String cardNumber = cardNumberGenerator.generateCardNumber();
+                    cardNumbers.set(i, cardNumber);
+                    fingerprints.set(i, cardFingerprintUtil.fingerprint(cardNumber));
+                    colliding.add(i);
+                }
+            }
+            pending = colliding;
+        }
+
+        List<String> encryptedNumbers = encryptionUtil.encryptAll(cardNumbers);
+        List<String> encryptedCvvs = encryptionUtil.encryptAll(cvvs);
+
+        List<Card> cards = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            CardCreateDto createDto = createDtos.get(i);
+            cards.add(buildCard(createDto, owners.get(createDto.getOwnerId()), lastFour(cardNumbers.get(i)),
+                    fingerprints.get(i), encryptedNumbers.get(i), encryptedCvvs.get(i)));
+        }
+
+        List<Card> savedCards = cardRepository.saveAll(cards);
+        log.info("Created {} cards", savedCards.size());
+        cardCache.evictOwnersAfterCommit(owners.keySet());
+
+        return mapToDtos(savedCards);
+    }
+
+    private Card generateCard(CardCreateDto createDto, User owner) {
         String cardNumber = cardNumberGenerator.generateCardNumber();
         String cvv = cardNumberGenerator.generateCVV();
 
-        // Проверяем уникальность номера карты
-        while (cardRepository.existsByCardNumber(encryptionUtil.encrypt(cardNumber))) {
+        // Проверяем уникальность номера карты по отпечатку, в том числе среди зарезервированных пулом
+        String fingerprint = cardFingerprintUtil.fingerprint(cardNumber);
+        while (cardRepository.existsByCardNumberFingerprint(fingerprint) || cardNumberPool.isReserved(fingerprint)) {
             cardNumber = cardNumberGenerator.generateCardNumber();
+            fingerprint = cardFingerprintUtil.fingerprint(cardNumber);
         }
 
-        Card card = Card.builder()
-                .cardNumber(encryptionUtil.encrypt(cardNumber))
+        return buildCard(createDto, owner, lastFour(cardNumber), fingerprint,
+                encryptionUtil.encrypt(cardNumber), encryptionUtil.encrypt(cvv));
+    }
+
+    private Card buildCard(CardCreateDto createDto, User owner, String panLast4, String fingerprint,
+                           String encryptedCardNumber, String encryptedCvv) {
+        return Card.builder()
+                .cardNumber(encryptedCardNumber)
+                .cardNumberFingerprint(fingerprint)
+                .panLast4(panLast4)
                 .cardHolder(createDto.getCardHolder().toUpperCase())
                 .expiryDate(createDto.getExpiryDate())
-                .cvv(encryptionUtil.encrypt(cvv))
+                .cvv(encryptedCvv)
                 .status(Card.CardStatus.ACTIVE)
                 .balance(createDto.getInitialBalance() != null ? createDto.getInitialBalance() : BigDecimal.ZERO)
                 .owner(owner)
                 .build();
+    }
 
-        Card savedCard = cardRepository.save(card);
-        log.info("Card created successfully with id: {}", savedCard.getId());
-
-        return mapToDto(savedCard, cardNumber);
+    private static String lastFour(String cardNumber) {
+        return cardNumber.substring(cardNumber.length() - 4);
     }
 
-    @Transactional
     public CardDto getCardById(Long id) {
-        Card card = findCardById(id);
-        card.updateStatus();
+        CardDto card = cardCache.getCard(id, this::loadCard);
+        if (card == null) {
+            throw new ResourceNotFoundException("Card not found with id: " + id);
+        }
+        return card;
+    }
+
+    /**
+     * Поиск карты по полному номеру: одно обращение к уникальному индексу по отпечатку.
+     */
+    @Transactional(readOnly = true)
+    public CardDto findCardByNumber(String cardNumber) {
+        Card card = cardRepository.findByCardNumberFingerprint(cardFingerprintUtil.fingerprint(cardNumber))
+                .orElseThrow(() -> new ResourceNotFoundException("Card not found"));
         return mapToDto(card);
     }
 
-    @Transactional
+    /**
+     * Страница карт пользователя. Без сортировки (как в /my-cards) страница собирается из кэша:
+     * список id карт владельца по возрастанию и CardDto по id, промахи загружаются одним запросом.
+     */
     public Page<CardDto> getUserCards(Long userId, Pageable pageable) {
-        return cardRepository.findByOwnerId(userId, pageable)
-                .map(card -> {
-                    card.updateStatus();
-                    return mapToDto(card);
-                });
+        if (!cardCache.isEnabled() || pageable.isUnpaged() || pageable.getSort().isSorted()) {
+            return readOnlyTransaction.execute(
+                    status -> mapViewsToDtos(cardRepository.findViewsByOwnerId(userId, pageable)));
+        }
+
+        List<Long> cardIds = cardCache.getOwnerCardIds(userId,
+                ownerId -> cardRepository.findIdsByOwnerId(ownerId).stream().sorted().toList());
+        int from = (int) Math.min(pageable.getOffset(), cardIds.size());
+        int to = Math.min(from + pageable.getPageSize(), cardIds.size());
+        List<Long> pageIds = cardIds.subList(from, to);
+
+        Map<Long, CardDto> cards = cardCache.getCards(pageIds, this::loadCards);
+        List<CardDto> content = pageIds.stream().map(cards::get).filter(Objects::nonNull).toList();
+        return new PageImpl<>(content, pageable, cardIds.size());
     }
 
+    @Transactional(readOnly = true)
     public List<CardDto> getUserCards(Long userId) {
-        return cardRepository.findByOwnerId(userId)
-                .stream()
-                .map(card -> {
-                    card.updateStatus();
-                    return mapToDto(card);
-                })
-                .toList();
+        return mapViewsToDtos(cardRepository.findViewsByOwnerId(userId));
     }
 
-    @Transactional
+    /**
+     * Фильтр по статусу с учетом срока действия, как он показывается в CardDto.
+     */
+    @Transactional(readOnly = true)
     public Page<CardDto> getUserCardsByStatus(Long userId, Card.CardStatus status, Pageable pageable) {
-        return cardRepository.findByOwnerIdAndStatus(userId, status, pageable)
-                .map(this::mapToDto);
+        Page<CardView> cards = status == Card.CardStatus.EXPIRED
+                ? cardRepository.findExpiredViewsByOwnerId(userId, pageable)
+                : cardRepository.findViewsByOwnerIdAndEffectiveStatus(userId, status, pageable);
+        return mapViewsToDtos(cards);
     }
 
     @Transactional(readOnly = true)
     public Page<CardDto> getAllCards(Pageable pageable) {
-        return cardRepository.findAll(pageable)
-                .map(card -> {
-                    card.updateStatus();
-                    return mapToDto(card);
-                });
+        return mapViewsToDtos(cardRepository.findAllViews(pageable));
     }
 
     @Transactional
@@ -115,6 +247,7 @@ public class CardService {
 
         card.setStatus(Card.CardStatus.BLOCKED);
         Card savedCard = cardRepository.save(card);
+        cardCache.evictCardsAfterCommit(List.of(savedCard.getId()));
 
         return mapToDto(savedCard);
     }
@@ -135,6 +268,7 @@ public class CardService {
 
         card.setStatus(Card.CardStatus.ACTIVE);
         Card savedCard = cardRepository.save(card);
+        cardCache.evictCardsAfterCommit(List.of(savedCard.getId()));
 
         return mapToDto(savedCard);
     }
@@ -149,12 +283,15 @@ public class CardService {
         }
 
         cardRepository.delete(card);
+        cardCache.evictCardsAfterCommit(List.of(cardId));
+        cardCache.evictOwnersAfterCommit(List.of(card.getOwner().getId()));
     }
 
-    @Transactional
     public BigDecimal getCardBalance(Long cardId, Long userId) {
-        Card card = cardRepository.findByIdAndOwnerId(cardId, userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Card not found or doesn't belong to user"));
+        CardDto card = cardCache.getCard(cardId, this::loadCard);
+        if (card == null || !card.getOwnerId().equals(userId)) {
+            throw new ResourceNotFoundException("Card not found or doesn't belong to user");
+        }
         return card.getBalance();
     }
 
@@ -171,6 +308,7 @@ public class CardService {
 
         card.setStatus(Card.CardStatus.BLOCKED);
         Card savedCard = cardRepository.save(card);
+        cardCache.evictCardsAfterCommit(List.of(savedCard.getId()));
 
         return mapToDto(savedCard);
     }
@@ -194,25 +332,137 @@ public class CardService {
         return findCardById(id);
     }
 
+    /**
+     * Загружает карту с блокировкой строки (SELECT ... FOR UPDATE).
+     * Вызывать только внутри транзакции. Карта блокируется для изменения, поэтому после коммита удаляется из кэша.
+     */
+    Card getCardByIdForUpdate(Long id) {
+        Card card = cardRepository.findByIdForUpdate(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Card not found with id: " + id));
+        cardCache.evictCardsAfterCommit(List.of(id));
+        return card;
+    }
+
+    /**
+     * Загружает карты одним запросом с блокировкой строк в порядке возрастания id.
+     * Вызывать только внутри транзакции. После коммита карты удаляются из кэша.
+     */
+    List<Card> getCardsByIdsForUpdate(Collection<Long> ids) {
+        List<Card> cards = cardRepository.findAllByIdForUpdate(ids);
+        cardCache.evictCardsAfterCommit(ids);
+        return cards;
+    }
+
+    /**
+     * Списывает сумму одним условным UPDATE.
+     * Возвращает false, если карта не принадлежит пользователю, неактивна, просрочена или на ней недостаточно средств.
+     */
+    boolean debitCard(Long cardId, Long ownerId, BigDecimal amount) {
+        boolean debited = cardRepository.debitIfAvailable(cardId, ownerId, amount) == 1;
+        if (debited) {
+            cardCache.evictCardsAfterCommit(List.of(cardId));
+        }
+        return debited;
+    }
+
+    /**
+     * Зачисляет сумму одним условным UPDATE.
+     * Возвращает false, если карта не принадлежит пользователю, неактивна или просрочена.
+     */
+    boolean creditCard(Long cardId, Long ownerId, BigDecimal amount) {
+        boolean credited = cardRepository.creditIfActive(cardId, ownerId, amount) == 1;
+        if (credited) {
+            cardCache.evictCardsAfterCommit(List.of(cardId));
+        }
+        return credited;
+    }
+
+    /**
+     * Id карт пользователя без загрузки сущностей и расшифровки номеров.
+     */
+    List<Long> getUserCardIds(Long userId) {
+        return cardRepository.findIdsByOwnerId(userId);
+    }
+
+    /**
+     * Владельцы карт (id карты → id владельца) без блокировки строк; несуществующих карт в ответе нет.
+     */
+    Map<Long, Long> getCardOwners(Collection<Long> ids) {
+        return cardRepository.findOwnersByIdIn(ids).stream()
+                .collect(Collectors.toMap(CardOwnerView::getCardId, CardOwnerView::getOwnerId));
+    }
+
+    boolean isCardOwner(Long cardId, Long userId) {
+        return cardRepository.existsByIdAndOwnerId(cardId, userId);
+    }
+
+    Card getCardReference(Long id) {
+        return cardRepository.getReferenceById(id);
+    }
+
     Card saveCard(Card card) {
-        return cardRepository.save(card);
+        Card savedCard = cardRepository.save(card);
+        cardCache.evictCardsAfterCommit(List.of(savedCard.getId()));
+        return savedCard;
+    }
+
+    private CardDto loadCard(Long id) {
+        return readOnlyTransaction.execute(status -> cardRepository.findViewById(id)
+                .map(view -> mapViewsToDtos(List.of(view)).get(0))
+                .orElse(null));
+    }
+
+    private Map<Long, CardDto> loadCards(Set<Long> ids) {
+        return readOnlyTransaction.execute(status -> mapViewsToDtos(cardRepository.findViewsByIds(ids)).stream()
+                .collect(Collectors.toMap(CardDto::getId, Function.identity())));
     }
 
     private CardDto mapToDto(Card card) {
-        String decryptedNumber = encryptionUtil.decrypt(card.getCardNumber());
-        return mapToDto(card, decryptedNumber);
+        return mapViewsToDtos(List.of(CardView.of(card))).get(0);
+    }
+
+    private List<CardDto> mapToDtos(List<Card> cards) {
+        return mapViewsToDtos(cards.stream().map(CardView::of).toList());
+    }
+
+    private Page<CardDto> mapViewsToDtos(Page<CardView> cards) {
+        return new PageImpl<>(mapViewsToDtos(cards.getContent()), cards.getPageable(), cards.getTotalElements());
+    }
+
+    /**
+     * Маска строится по pan_last4. Номер расшифровывается только у карт, для которых
+     * CardNumberBackfill еще не заполнил pan_last4; такие номера расшифровываются одним пакетом.
+     */
+    private List<CardDto> mapViewsToDtos(List<CardView> cards) {
+        List<CardView> withoutLastFour = cards.stream().filter(card -> card.getPanLast4() == null).toList();
+        Map<Long, String> decryptedLastFour = new HashMap<>();
+        if (!withoutLastFour.isEmpty()) {
+            log.debug("Decrypting numbers of {} cards without pan_last4", withoutLastFour.size());
+            List<String> numbers = encryptionUtil.decryptAll(
+                    withoutLastFour.stream().map(CardView::getCardNumber).toList());
+            for (int i = 0; i < withoutLastFour.size(); i++) {
+                decryptedLastFour.put(withoutLastFour.get(i).getId(), lastFour(numbers.get(i)));
+            }
+        }
+
+        List<CardDto> dtos = new ArrayList<>(cards.size());
+        for (CardView card : cards) {
+            String lastFour = card.getPanLast4() != null ? card.getPanLast4() : decryptedLastFour.get(card.getId());
+            dtos.add(mapToDto(card, lastFour));
+        }
+        return dtos;
     }
 
-    private CardDto mapToDto(Card card, String decryptedNumber) {
+    private CardDto mapToDto(CardView card, String lastFour) {
         return CardDto.builder()
                 .id(card.getId())
-                .maskedCardNumber(cardMaskingUtil.maskCardNumber(decryptedNumber))
+                .maskedCardNumber(cardMaskingUtil.maskLastFour(lastFour))
                 .cardHolder(card.getCardHolder())
                 .expiryDate(card.getExpiryDate())
-                .status(card.getStatus())
+                .status(card.effectiveStatus())
                 .balance(card.getBalance())
-                .ownerId(card.getOwner().getId())
-                .ownerUsername(card.getOwner().getUsername())
+                .ownerId(card.getOwnerId())
+                .ownerUsername(card.getOwnerUsername())
                 .build();
     }
 }
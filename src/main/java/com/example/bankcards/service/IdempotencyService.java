@@ -0,0 +1,236 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.entity.IdempotencyKey;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Дедупликация переводов по заголовку Idempotency-Key.
+ * Ключи хранятся в таблице idempotency_keys, перед ней стоит ограниченный LRU-кэш в памяти.
+ * Одновременные запросы с одним ключом на этом узле выполняются один раз и получают общий результат.
+ * Просроченный ключ (expiresAt в прошлом) считается отсутствующим и до плановой очистки:
+ * запрос с ним выполняет новый перевод, а старая запись удаляется в той же транзакции.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<String, InFlightRequest> inFlight = new ConcurrentHashMap<>();
+
+    private Map<String, IdempotencyKey> recentKeys;
+
+    @Value("${idempotency.cache-size:10000}")
+    private int cacheSize;
+
+    @Value("${idempotency.ttl:PT24H}")
+    private Duration ttl;
+
+    @Value("${idempotency.eviction-batch-size:500}")
+    private int evictionBatchSize;
+
+    @PostConstruct
+    void init() {
+        // LinkedHashMap в порядке доступа: при переполнении вытесняется давно не использованный ключ
+        recentKeys = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IdempotencyKey> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Выполняет перевод не более одного раза для пары (пользователь, ключ).
+     * Повторный запрос возвращает сохраненную транзакцию, не обращаясь к картам.
+     */
+    public Transaction execute(Long userId, String idempotencyKey, TransferDto request, Supplier<Transaction> transfer) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BusinessException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters long");
+        }
+
+        String cacheKey = userId + ":" + idempotencyKey;
+        String requestHash = hash(request);
+
+        IdempotencyKey cached = cachedKey(cacheKey);
+        if (cached != null) {
+            return replay(cached, requestHash);
+        }
+
+        InFlightRequest pending = new InFlightRequest(requestHash, new CompletableFuture<>());
+        InFlightRequest running = inFlight.putIfAbsent(cacheKey, pending);
+        if (running != null) {
+            log.debug("Joining in-flight request for idempotency key {}", idempotencyKey);
+            return await(running, requestHash);
+        }
+
+        try {
+            Transaction transaction = executeOnce(userId, idempotencyKey, cacheKey, requestHash, transfer);
+            pending.result().complete(transaction);
+            return transaction;
+        } catch (RuntimeException e) {
+            pending.result().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, pending);
+        }
+    }
+
+    /**
+     * Удаляет просроченные ключи пачками, каждая пачка в своей транзакции.
+     */
+    @Scheduled(fixedDelayString = "${idempotency.eviction-interval:PT10M}")
+    public void evictExpiredKeys() {
+        LocalDateTime now = LocalDateTime.now();
+        int removed = 0;
+        List<Long> expiredIds;
+
+        do {
+            expiredIds = idempotencyKeyRepository.findExpiredIds(now, PageRequest.of(0, evictionBatchSize));
+            if (!expiredIds.isEmpty()) {
+                idempotencyKeyRepository.deleteAllByIdInBatch(expiredIds);
+                removed += expiredIds.size();
+            }
+        } while (expiredIds.size() == evictionBatchSize);
+
+        synchronized (this) {
+            recentKeys.values().removeIf(key -> key.getExpiresAt().isBefore(now));
+        }
+
+        if (removed > 0) {
+            log.info("Evicted {} expired idempotency keys", removed);
+        }
+    }
+
+    private Transaction executeOnce(Long userId, String idempotencyKey, String cacheKey,
+                                    String requestHash, Supplier<Transaction> transfer) {
+        LocalDateTime now = LocalDateTime.now();
+        Optional<IdempotencyKey> stored = idempotencyKeyRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey);
+        if (stored.isPresent() && !isExpired(stored.get(), now)) {
+            cacheKey(cacheKey, stored.get());
+            return replay(stored.get(), requestHash);
+        }
+        Long expiredKeyId = stored.map(IdempotencyKey::getId).orElse(null);
+
+        IdempotencyKey key = IdempotencyKey.builder()
+                .userId(userId)
+                .idempotencyKey(idempotencyKey)
+                .requestHash(requestHash)
+                .build();
+
+        try {
+            // Перевод и запись ключа выполняются в одной транзакции БД
+            Transaction transaction = transactionTemplate.execute(status -> {
+                if (expiredKeyId != null) {
+                    // Ключ просрочен, но еще не удален очисткой: освобождаем его для нового перевода
+                    idempotencyKeyRepository.deleteIfExpired(expiredKeyId, now);
+                }
+                Transaction executed = transfer.get();
+                key.setTransactionId(executed.getId());
+                key.setExpiresAt(LocalDateTime.now().plus(ttl));
+                idempotencyKeyRepository.save(key);
+                return executed;
+            });
+            cacheKey(cacheKey, key);
+            return transaction;
+        } catch (DataIntegrityViolationException e) {
+            // Ключ успел записать другой узел: наш перевод откатился, возвращаем сохраненный результат
+            IdempotencyKey winner = idempotencyKeyRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey)
+                    .orElseThrow(() -> e);
+            cacheKey(cacheKey, winner);
+            return replay(winner, requestHash);
+        }
+    }
+
+    private Transaction await(InFlightRequest running, String requestHash) {
+        if (!running.requestHash().equals(requestHash)) {
+            throw new BusinessException("Idempotency-Key was already used for a different request");
+        }
+        try {
+            return running.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Transaction replay(IdempotencyKey key, String requestHash) {
+        checkSameRequest(key, requestHash);
+        log.info("Replaying transaction {} for idempotency key {}", key.getTransactionId(), key.getIdempotencyKey());
+        return transactionRepository.findById(key.getTransactionId())
+                .orElseThrow(() -> new BusinessException("Idempotent request result is not available"));
+    }
+
+    private void checkSameRequest(IdempotencyKey key, String requestHash) {
+        if (!key.getRequestHash().equals(requestHash)) {
+            throw new BusinessException("Idempotency-Key was already used for a different request");
+        }
+    }
+
+    private synchronized IdempotencyKey cachedKey(String cacheKey) {
+        IdempotencyKey key = recentKeys.get(cacheKey);
+        if (key != null && isExpired(key, LocalDateTime.now())) {
+            recentKeys.remove(cacheKey);
+            return null;
+        }
+        return key;
+    }
+
+    private static boolean isExpired(IdempotencyKey key, LocalDateTime now) {
+        return key.getExpiresAt().isBefore(now);
+    }
+
+    private synchronized void cacheKey(String cacheKey, IdempotencyKey key) {
+        recentKeys.put(cacheKey, key);
+    }
+
+    private static String hash(TransferDto request) {
+        String canonical = request.getFromCardId() + "|" + request.getToCardId() + "|"
+                + request.getAmount().stripTrailingZeros().toPlainString() + "|"
+                + (request.getDescription() != null ? request.getDescription() : "");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record InFlightRequest(String requestHash, CompletableFuture<Transaction> result) {
+    }
+}
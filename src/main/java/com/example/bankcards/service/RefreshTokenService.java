@@ -0,0 +1,127 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.RefreshToken;
+import com.example.bankcards.repository.RefreshTokenRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Refresh-токены: 32 случайных байта, в базе хранится только SHA-256 от них.
+ * Каждый обмен заменяет токен новым из той же цепочки (family_id). Повторное предъявление
+ * уже замененного токена означает, что он утек: отзывается вся цепочка.
+ * Вместе с токеном хранится версия безопасности пользователя, так что блокировка, смена пароля
+ * или ролей отзывает и refresh-токены.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    @Value("${jwt.refresh-expiration:P30D}")
+    private Duration refreshExpiration;
+
+    /**
+     * Результат обмена: владелец токена, версия безопасности, с которой выпущена цепочка, и новый токен.
+     */
+    public record Rotation(Long userId, long securityVersion, String refreshToken) {
+    }
+
+    /**
+     * Выпускает refresh-токен новой цепочки (при входе по паролю).
+     */
+    @Transactional
+    public String issue(Long userId, long securityVersion) {
+        return issue(userId, securityVersion, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Обменивает refresh-токен на новый. Недействительный, истекший или повторно предъявленный токен
+     * отклоняется с BadCredentialsException; при повторном предъявлении цепочка отзывается
+     * (noRollbackFor, чтобы отзыв сохранился вместе с ошибкой).
+     */
+    @Transactional(noRollbackFor = BadCredentialsException.class)
+    public Rotation rotate(String rawToken) {
+        LocalDateTime now = LocalDateTime.now();
+        RefreshToken token = refreshTokenRepository.findByTokenHash(hash(rawToken))
+                .orElseThrow(() -> new BadCredentialsException("Invalid refresh token"));
+
+        // Условный UPDATE: из двух параллельных обменов одного токена проходит только один
+        if (token.getRevokedAt() != null || refreshTokenRepository.revokeIfActive(token.getId(), now) == 0) {
+            int revoked = refreshTokenRepository.revokeFamily(token.getFamilyId(), now);
+            log.warn("Refresh token reuse detected for user {}, revoked {} tokens of family {}",
+                    token.getUserId(), revoked, token.getFamilyId());
+            throw new BadCredentialsException("Invalid refresh token");
+        }
+        if (token.getExpiresAt().isBefore(now)) {
+            throw new BadCredentialsException("Refresh token expired");
+        }
+
+        String next = issue(token.getUserId(), token.getSecurityVersion(), token.getFamilyId());
+        return new Rotation(token.getUserId(), token.getSecurityVersion(), next);
+    }
+
+    /**
+     * Отзывает цепочку, к которой относится токен (выход). Неизвестный токен игнорируется.
+     */
+    @Transactional
+    public void revoke(String rawToken) {
+        refreshTokenRepository.findByTokenHash(hash(rawToken))
+                .ifPresent(token -> refreshTokenRepository.revokeFamily(token.getFamilyId(), LocalDateTime.now()));
+    }
+
+    /**
+     * Удаляет истекшие токены (и отозванные, и действующие).
+     */
+    @Scheduled(fixedDelayString = "${jwt.refresh-cleanup-interval:PT1H}")
+    @Transactional
+    public void deleteExpiredTokens() {
+        int removed = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+        if (removed > 0) {
+            log.info("Deleted {} expired refresh tokens", removed);
+        }
+    }
+
+    private String issue(Long userId, long securityVersion, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        refreshTokenRepository.save(RefreshToken.builder()
+                .userId(userId)
+                .tokenHash(hash(rawToken))
+                .familyId(familyId)
+                .securityVersion(securityVersion)
+                .expiresAt(LocalDateTime.now().plus(refreshExpiration))
+                .build());
+        return rawToken;
+    }
+
+    private static String hash(String rawToken) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(rawToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
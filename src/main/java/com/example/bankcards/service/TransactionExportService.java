@@ -0,0 +1,249 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.exception.ResourceNotFoundException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+/**
+ * Выгрузка полной истории карты в CSV или NDJSON.
+ * Строки читаются курсором JDBC (только вперед, с фиксированным fetch size) и сразу пишутся в поток ответа,
+ * поэтому расход памяти не зависит от числа выгружаемых транзакций.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionExportService {
+
+    private static final LocalDateTime DEFAULT_FROM = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime DEFAULT_TO = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private static final String FORMULA_PREFIXES = "=+-@\t\r";
+    private static final String CSV_HEADER = "id,from_card_id,to_card_id,amount,status,description,failure_reason,created_at";
+
+    /**
+     * Исходящие и входящие идут отдельными ветками по индексам (card_id, created_at, id),
+     * так что PostgreSQL сливает их без сортировки и отдает первые строки сразу.
+     */
+    private static final String EXPORT_QUERY = """
+            SELECT t.id, t.from_card_id, t.to_card_id, t.amount, t.status, t.description, t.failure_reason, t.created_at
+            FROM transactions t
+            WHERE t.from_card_id = ? AND t.created_at >= ? AND t.created_at < ?
+            UNION ALL
+            SELECT t.id, t.from_card_id, t.to_card_id, t.amount, t.status, t.description, t.failure_reason, t.created_at
+            FROM transactions t
+            WHERE t.to_card_id = ? AND t.from_card_id <> ? AND t.created_at >= ? AND t.created_at < ?
+            ORDER BY created_at, id
+            """;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final CardService cardService;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${transfer.export.fetch-size:500}")
+    private int fetchSize;
+
+    @Getter
+    @RequiredArgsConstructor
+    public enum ExportFormat {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        public static ExportFormat of(String format) {
+            try {
+                return valueOf(format.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new BusinessException("Unsupported export format: " + format);
+            }
+        }
+    }
+
+    /**
+     * Проверяет доступ к карте до начала ответа и возвращает тело, которое читает и пишет строки
+     * в отдельной read-only транзакции (курсор PostgreSQL работает только при выключенном autocommit).
+     */
+    public StreamingResponseBody exportCardTransactions(Long cardId, Long userId, ExportFormat format,
+                                                        LocalDateTime from, LocalDateTime to) {
+        if (!cardService.isCardOwner(cardId, userId)) {
+            throw new ResourceNotFoundException("Card not found or doesn't belong to user");
+        }
+
+        LocalDateTime rangeFrom = from != null ? from : DEFAULT_FROM;
+        LocalDateTime rangeTo = to != null ? to : DEFAULT_TO;
+        if (!rangeFrom.isBefore(rangeTo)) {
+            throw new BusinessException("Export range start must be before its end");
+        }
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        return out -> {
+            log.info("Exporting transactions of card {} as {} for user {}", cardId, format, userId);
+            RowWriter writer = format == ExportFormat.CSV ? new CsvRowWriter(out) : new NdjsonRowWriter(out);
+            long[] rows = {0};
+            try {
+                readOnly.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(
+                            EXPORT_QUERY, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    statement.setFetchSize(fetchSize);
+                    statement.setLong(1, cardId);
+                    statement.setTimestamp(2, Timestamp.valueOf(rangeFrom));
+                    statement.setTimestamp(3, Timestamp.valueOf(rangeTo));
+                    statement.setLong(4, cardId);
+                    statement.setLong(5, cardId);
+                    statement.setTimestamp(6, Timestamp.valueOf(rangeFrom));
+                    statement.setTimestamp(7, Timestamp.valueOf(rangeTo));
+                    return statement;
+                }, (RowCallbackHandler) rs -> {
+                    writer.write(rs);
+                    rows[0]++;
+                }));
+                writer.close();
+            } catch (UncheckedIOException e) {
+                // Клиент оборвал соединение: курсор закрыт вместе с транзакцией
+                throw e.getCause();
+            }
+            log.info("Exported {} transactions of card {}", rows[0], cardId);
+        };
+    }
+
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException;
+
+        void close() throws IOException;
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+
+        private final Writer writer;
+
+        CsvRowWriter(OutputStream out) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException {
+            try {
+                writer.write(Long.toString(rs.getLong(1)));
+                writer.write(',');
+                writer.write(Long.toString(rs.getLong(2)));
+                writer.write(',');
+                writer.write(Long.toString(rs.getLong(3)));
+                writer.write(',');
+                writer.write(rs.getBigDecimal(4).toPlainString());
+                writer.write(',');
+                writer.write(rs.getString(5));
+                writer.write(',');
+                writeEscaped(rs.getString(6));
+                writer.write(',');
+                writeEscaped(rs.getString(7));
+                writer.write(',');
+                writer.write(rs.getObject(8, LocalDateTime.class).toString());
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+
+        private void writeEscaped(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            // Текст, начинающийся с =, +, -, @ (или табуляции/перевода строки), Excel считает формулой:
+            // апостроф в начале заставляет показать его как текст (OWASP CSV Injection)
+            if (!value.isEmpty() && FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0) {
+                value = "'" + value;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    private static final class NdjsonRowWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+        private boolean empty = true;
+
+        NdjsonRowWriter(OutputStream out) throws IOException {
+            this.generator = JSON_FACTORY.createGenerator(out);
+            // Каждый объект на отдельной строке
+            generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException {
+            try {
+                generator.writeStartObject();
+                generator.writeNumberField("id", rs.getLong(1));
+                generator.writeNumberField("fromCardId", rs.getLong(2));
+                generator.writeNumberField("toCardId", rs.getLong(3));
+                generator.writeFieldName("amount");
+                generator.writeNumber(rs.getBigDecimal(4).toPlainString());
+                generator.writeStringField("status", rs.getString(5));
+                writeOptional("description", rs.getString(6));
+                writeOptional("failureReason", rs.getString(7));
+                generator.writeStringField("createdAt", rs.getObject(8, LocalDateTime.class).toString());
+                generator.writeEndObject();
+                empty = false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!empty) {
+                generator.writeRaw('\n');
+            }
+            generator.flush();
+        }
+
+        private void writeOptional(String field, String value) throws IOException {
+            if (value != null) {
+                generator.writeStringField(field, value);
+            }
+        }
+    }
+}
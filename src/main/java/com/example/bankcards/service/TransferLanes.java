@@ -0,0 +1,104 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.exception.ServiceBusyException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Полосы последовательного исполнения переводов.
+ * Перевод попадает в полосу по хэшу меньшего id карты, поэтому переводы с одной горячей карты
+ * обрабатываются одним потоком и не конкурируют за строку в БД.
+ * Поток полосы забирает из очереди все накопившиеся переводы (не больше maxGroupSize)
+ * и передает их обработчику одной группой, которая проводится одним коммитом.
+ * Очередь полосы ограничена (queueCapacity): при переполнении перевод сразу отклоняется
+ * с ServiceBusyException (503), а не копится в памяти.
+ */
+@Slf4j
+class TransferLanes {
+
+    private final List<BlockingQueue<Submission>> queues;
+    private final List<Thread> workers;
+    private final int maxGroupSize;
+    private final Consumer<List<Submission>> settler;
+
+    private volatile boolean running = true;
+
+    TransferLanes(int laneCount, int queueCapacity, int maxGroupSize, Consumer<List<Submission>> settler) {
+        this.maxGroupSize = maxGroupSize;
+        this.settler = settler;
+        this.queues = new ArrayList<>(laneCount);
+        this.workers = new ArrayList<>(laneCount);
+
+        for (int i = 0; i < laneCount; i++) {
+            BlockingQueue<Submission> queue = new ArrayBlockingQueue<>(queueCapacity);
+            Thread worker = new Thread(() -> runLane(queue), "transfer-lane-" + i);
+            worker.setDaemon(true);
+            queues.add(queue);
+            workers.add(worker);
+            worker.start();
+        }
+        log.info("Started {} transfer lanes, queue capacity {}, max group size {}",
+                laneCount, queueCapacity, maxGroupSize);
+    }
+
+    CompletableFuture<Transaction> submit(TransferDto transfer, Long userId) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new BusinessException("Transfer service is shutting down"));
+        }
+        Submission submission = new Submission(transfer, userId, new CompletableFuture<>());
+        if (!queues.get(laneOf(transfer)).offer(submission)) {
+            return CompletableFuture.failedFuture(
+                    new ServiceBusyException("Too many pending transfers, please retry later"));
+        }
+        return submission.result();
+    }
+
+    void shutdown() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        for (BlockingQueue<Submission> queue : queues) {
+            List<Submission> rejected = new ArrayList<>();
+            queue.drainTo(rejected);
+            rejected.forEach(submission -> submission.result()
+                    .completeExceptionally(new BusinessException("Transfer service is shutting down")));
+        }
+    }
+
+    private int laneOf(TransferDto transfer) {
+        long laneKey = Math.min(transfer.getFromCardId(), transfer.getToCardId());
+        return Math.floorMod(Long.hashCode(laneKey), queues.size());
+    }
+
+    private void runLane(BlockingQueue<Submission> queue) {
+        List<Submission> group = new ArrayList<>(maxGroupSize);
+        while (running) {
+            try {
+                group.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(group, maxGroupSize - 1);
+
+            try {
+                settler.accept(group);
+            } catch (RuntimeException e) {
+                log.error("Transfer group of {} failed", group.size(), e);
+                group.forEach(submission -> submission.result().completeExceptionally(e));
+            }
+            group.clear();
+        }
+    }
+
+    record Submission(TransferDto transfer, Long userId, CompletableFuture<Transaction> result) {
+    }
+}
@@ -1,47 +1,112 @@
 package com.example.bankcards.service;
 
-import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.BatchTransferItemResult;
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.CursorPage;
+import com.example.bankcards.dto.TransactionHistoryRow;
+import com.example.bankcards.dto.TransactionView;
 import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.dto.TransferStatusDto;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transaction;
 import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.exception.CardBlockedException;
 import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.ResourceNotFoundException;
 import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.util.CardMaskingUtil;
+import com.example.bankcards.util.CursorUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class TransferService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // Позиция перед самой новой транзакцией: первая страница ленты
+    private static final CursorUtil.Cursor FIRST_PAGE =
+            new CursorUtil.Cursor(LocalDateTime.of(9999, 12, 31, 0, 0), Long.MAX_VALUE);
+
     private final CardService cardService;
     private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final CursorUtil cursorUtil;
+    private final CardMaskingUtil cardMaskingUtil;
+
+    @Value("${transfer.fast-path-enabled:false}")
+    private boolean fastPathEnabled;
+
+    @Value("${transfer.lanes.enabled:false}")
+    private boolean lanesEnabled;
+
+    @Value("${transfer.lanes.count:4}")
+    private int laneCount;
+
+    @Value("${transfer.lanes.queue-capacity:1024}")
+    private int laneQueueCapacity;
+
+    @Value("${transfer.lanes.max-group-size:64}")
+    private int laneMaxGroupSize;
+
+    private TransferLanes lanes;
+
+    @Value("${transfer.settlement.enabled:true}")
+    private boolean settlementEnabled;
+
+    @Value("${transfer.settlement.batch-size:100}")
+    private int settlementBatchSize;
 
     @Transactional
     public Transaction transferBetweenOwnCards(TransferDto transferDto, Long userId) {
         log.info("Processing transfer from card {} to card {} for user {}",
                 transferDto.getFromCardId(), transferDto.getToCardId(), userId);
 
-        // Проверки
-        if (transferDto.getFromCardId().equals(transferDto.getToCardId())) {
-            throw new BusinessException("Cannot transfer to the same card");
-        }
+        validateTransferRequest(transferDto);
 
-        if (transferDto.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
-            throw new BusinessException("Transfer amount must be positive");
+        if (fastPathEnabled) {
+            return transferWithConditionalUpdates(transferDto, userId);
         }
 
-        // Получаем карты
-        Card fromCard = cardService.getCardByIdInternal(transferDto.getFromCardId());
-        Card toCard = cardService.getCardByIdInternal(transferDto.getToCardId());
+        // Получаем карты с блокировкой строк
+        Card[] cards = lockCardsInOrder(transferDto.getFromCardId(), transferDto.getToCardId());
+        Card fromCard = cards[0];
+        Card toCard = cards[1];
 
         // Проверяем, что обе карты принадлежат пользователю
         if (!fromCard.getOwner().getId().equals(userId) || !toCard.getOwner().getId().equals(userId)) {
@@ -94,23 +159,607 @@ public class TransferService {
         }
     }
 
+    /**
+     * Выполняет пакет переводов между своими картами в одной транзакции.
+     * Сначала без блокировки читаются владельцы карт: переводы с чужими или несуществующими картами
+     * отклоняются сразу, и чужие карты не блокируются. Карты пользователя загружаются одним запросом
+     * с блокировкой строк, проверки выполняются в памяти, затем по каждой карте применяется итоговое изменение баланса.
+     * В режиме ALL_OR_NOTHING ошибка любого перевода отменяет весь пакет,
+     * в режиме BEST_EFFORT применяются только корректные переводы.
+     */
+    @Transactional
+    public BatchTransferResponse transferBatch(BatchTransferRequest request, Long userId) {
+        List<TransferDto> transfers = request.getTransfers();
+        log.info("Processing batch of {} transfers in {} mode for user {}",
+                transfers.size(), request.getMode(), userId);
+
+        List<RuntimeException> ownershipErrors = checkOwnCards(transfers, Collections.nCopies(transfers.size(), userId));
+        Map<Long, Card> cards = lockCards(IntStream.range(0, transfers.size())
+                .filter(i -> ownershipErrors.get(i) == null)
+                .mapToObj(transfers::get)
+                .toList());
+
+        // Балансы карт с учетом уже принятых переводов пакета
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        List<BatchTransferItemResult> results = new ArrayList<>(transfers.size());
+        List<BatchTransferItemResult> accepted = new ArrayList<>();
+        List<Transaction> transactions = new ArrayList<>();
+
+        for (int i = 0; i < transfers.size(); i++) {
+            try {
+                if (ownershipErrors.get(i) != null) {
+                    throw ownershipErrors.get(i);
+                }
+                applyTransfer(transfers.get(i), userId, cards, balances);
+                transactions.add(successfulTransaction(transfers.get(i), cards));
+            } catch (BusinessException | CardBlockedException | InsufficientFundsException
+                     | ResourceNotFoundException e) {
+                results.add(BatchTransferItemResult.builder()
+                        .index(i)
+                        .status(Transaction.TransactionStatus.FAILED)
+                        .message(e.getMessage())
+                        .build());
+                continue;
+            }
+
+            BatchTransferItemResult result = BatchTransferItemResult.builder()
+                    .index(i)
+                    .status(Transaction.TransactionStatus.SUCCESS)
+                    .build();
+            results.add(result);
+            accepted.add(result);
+        }
+
+        if (accepted.size() < transfers.size() && request.getMode() == BatchTransferRequest.Mode.ALL_OR_NOTHING) {
+            accepted.forEach(result -> {
+                result.setStatus(Transaction.TransactionStatus.FAILED);
+                result.setMessage("Not applied: batch rejected");
+            });
+            log.info("Batch rejected: {} of {} transfers failed validation",
+                    transfers.size() - accepted.size(), transfers.size());
+            return toBatchResponse(request.getMode(), results);
+        }
+
+        balances.forEach((cardId, balance) -> cards.get(cardId).setBalance(balance));
+
+        List<Transaction> savedTransactions = transactionRepository.saveAll(transactions);
+        for (int i = 0; i < savedTransactions.size(); i++) {
+            accepted.get(i).setTransactionId(savedTransactions.get(i).getId());
+        }
+
+        log.info("Batch completed: {} of {} transfers applied", accepted.size(), transfers.size());
+        return toBatchResponse(request.getMode(), results);
+    }
+
+    /**
+     * Принимает перевод к асинхронному проведению: проверяет карты без блокировки строк
+     * и сохраняет транзакцию в статусе PENDING. Баланс проверяется и меняется при проведении.
+     */
+    @Transactional
+    public Transaction submitPendingTransfer(TransferDto transferDto, Long userId) {
+        log.info("Accepting pending transfer from card {} to card {} for user {}",
+                transferDto.getFromCardId(), transferDto.getToCardId(), userId);
+
+        validateTransferRequest(transferDto);
+
+        Card fromCard = cardService.getCardByIdInternal(transferDto.getFromCardId());
+        Card toCard = cardService.getCardByIdInternal(transferDto.getToCardId());
+
+        if (!fromCard.getOwner().getId().equals(userId) || !toCard.getOwner().getId().equals(userId)) {
+            throw new BusinessException("You can only transfer between your own cards");
+        }
+
+        cardService.validateCardForTransaction(fromCard);
+        cardService.validateCardForTransaction(toCard);
+
+        Transaction transaction = Transaction.builder()
+                .fromCard(fromCard)
+                .toCard(toCard)
+                .amount(transferDto.getAmount())
+                .status(Transaction.TransactionStatus.PENDING)
+                .description(transferDto.getDescription())
+                .build();
+
+        return transactionRepository.save(transaction);
+    }
+
     @Transactional(readOnly = true)
-    public Page<Transaction> getUserTransactions(Long userId, Pageable pageable) {
-        List<CardDto> userCards = cardService.getUserCards(userId);
+    public TransferStatusDto getTransferStatus(Long transactionId, Long userId) {
+        Transaction transaction = transactionRepository.findById(transactionId)
+                .filter(t -> t.getFromCard().getOwner().getId().equals(userId))
+                .orElseThrow(() -> new ResourceNotFoundException("Transaction not found with id: " + transactionId));
+
+        return TransferStatusDto.builder()
+                .transactionId(transaction.getId())
+                .status(transaction.getStatus())
+                .fromCardId(transaction.getFromCard().getId())
+                .toCardId(transaction.getToCard().getId())
+                .amount(transaction.getAmount())
+                .failureReason(transaction.getFailureReason())
+                .createdAt(transaction.getCreatedAt())
+                .build();
+    }
+
+    /**
+     * Фоновое проведение переводов в статусе PENDING.
+     * Каждая пачка забирается с SKIP LOCKED и проводится в своей транзакции БД,
+     * поэтому несколько экземпляров приложения проводят разные пачки параллельно.
+     */
+    @Scheduled(fixedDelayString = "${transfer.settlement.interval:PT1S}")
+    public void settlePendingTransfers() {
+        if (!settlementEnabled) {
+            return;
+        }
+
+        int total = 0;
+        int settled;
+        do {
+            settled = transactionTemplate.execute(status -> settlePendingBatch());
+            total += settled;
+        } while (settled == settlementBatchSize);
+
+        if (total > 0) {
+            log.info("Settled {} pending transfers", total);
+        }
+    }
+
+    private int settlePendingBatch() {
+        List<Transaction> pending = transactionRepository.findPendingForSettlement(
+                PageRequest.of(0, settlementBatchSize));
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        List<TransferDto> transfers = pending.stream()
+                .map(transaction -> TransferDto.builder()
+                        .fromCardId(transaction.getFromCard().getId())
+                        .toCardId(transaction.getToCard().getId())
+                        .amount(transaction.getAmount())
+                        .build())
+                .toList();
+        Map<Long, Card> cards = lockCards(transfers);
+        Map<Long, BigDecimal> balances = new HashMap<>();
+
+        for (int i = 0; i < pending.size(); i++) {
+            Transaction transaction = pending.get(i);
+            TransferDto transfer = transfers.get(i);
+            try {
+                // Перевод принимался от владельца карты списания
+                Long userId = requireCard(cards, transfer.getFromCardId()).getOwner().getId();
+                applyTransfer(transfer, userId, cards, balances);
+                transaction.setStatus(Transaction.TransactionStatus.SUCCESS);
+            } catch (BusinessException | CardBlockedException | InsufficientFundsException
+                     | ResourceNotFoundException e) {
+                transaction.setStatus(Transaction.TransactionStatus.FAILED);
+                transaction.setFailureReason(e.getMessage());
+                log.info("Pending transfer {} failed: {}", transaction.getId(), e.getMessage());
+            }
+        }
+
+        balances.forEach((cardId, balance) -> cards.get(cardId).setBalance(balance));
+        return pending.size();
+    }
+
+    /**
+     * Отправляет перевод на исполнение. Если включены полосы исполнения ({@code transfer.lanes.enabled}),
+     * перевод ставится в очередь полосы своей карты и проводится вместе с соседними переводами одним коммитом
+     * (при переполненной очереди — ServiceBusyException); иначе выполняется сразу в текущем потоке.
+     * Переводы с Idempotency-Key сюда не попадают: они идут через IdempotencyService в транзакции вместе с ключом.
+     */
+    public CompletableFuture<Transaction> submitTransfer(TransferDto transferDto, Long userId) {
+        if (lanes != null) {
+            return lanes.submit(transferDto, userId);
+        }
+        try {
+            return CompletableFuture.completedFuture(
+                    transactionTemplate.execute(status -> transferBetweenOwnCards(transferDto, userId)));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @PostConstruct
+    void startLanes() {
+        if (lanesEnabled) {
+            lanes = new TransferLanes(laneCount, laneQueueCapacity, laneMaxGroupSize, this::settleLaneGroup);
+        }
+    }
+
+    @PreDestroy
+    void stopLanes() {
+        if (lanes != null) {
+            lanes.shutdown();
+        }
+    }
+
+    /**
+     * Проводит группу переводов одной полосы в одной транзакции БД.
+     * Каждый перевод проверяется с учетом предыдущих переводов группы, отклоненный перевод не мешает остальным.
+     * Результаты отдаются вызывающим только после коммита.
+     */
+    private void settleLaneGroup(List<TransferLanes.Submission> group) {
+        List<Transaction> transactions = new ArrayList<>(Collections.nCopies(group.size(), null));
+        List<RuntimeException> errors = new ArrayList<>(Collections.nCopies(group.size(), null));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            List<TransferDto> transfers = group.stream().map(TransferLanes.Submission::transfer).toList();
+            List<RuntimeException> ownershipErrors = checkOwnCards(
+                    transfers, group.stream().map(TransferLanes.Submission::userId).toList());
+            Map<Long, Card> cards = lockCards(IntStream.range(0, transfers.size())
+                    .filter(i -> ownershipErrors.get(i) == null)
+                    .mapToObj(transfers::get)
+                    .toList());
+            Map<Long, BigDecimal> balances = new HashMap<>();
+
+            for (int i = 0; i < group.size(); i++) {
+                TransferLanes.Submission submission = group.get(i);
+                if (ownershipErrors.get(i) != null) {
+                    errors.set(i, ownershipErrors.get(i));
+                    continue;
+                }
+                try {
+                    applyTransfer(submission.transfer(), submission.userId(), cards, balances);
+                    transactions.set(i, successfulTransaction(submission.transfer(), cards));
+                } catch (BusinessException | CardBlockedException | InsufficientFundsException
+                         | ResourceNotFoundException e) {
+                    errors.set(i, e);
+                }
+            }
+
+            balances.forEach((cardId, balance) -> cards.get(cardId).setBalance(balance));
+            transactionRepository.saveAll(transactions.stream().filter(Objects::nonNull).toList());
+        });
+
+        for (int i = 0; i < group.size(); i++) {
+            if (errors.get(i) != null) {
+                group.get(i).result().completeExceptionally(errors.get(i));
+            } else {
+                group.get(i).result().complete(transactions.get(i));
+            }
+        }
+        log.debug("Settled lane group of {} transfers", group.size());
+    }
+
+    /**
+     * Загружает все карты переводов одним запросом с блокировкой строк в порядке возрастания id.
+     */
+    private Map<Long, Card> lockCards(List<TransferDto> transfers) {
+        if (transfers.isEmpty()) {
+            return Map.of();
+        }
+        return cardService.getCardsByIdsForUpdate(cardIdsOf(transfers)).stream()
+                .collect(Collectors.toMap(Card::getId, Function.identity()));
+    }
+
+    /**
+     * Проверяет до блокировки, что обе карты каждого перевода существуют и принадлежат его отправителю
+     * (userIds.get(i) — отправитель transfers.get(i)). Владельцы читаются одним запросом без блокировки,
+     * поэтому отклоненный перевод не задерживает переводы владельцев чужих карт.
+     * Возвращает ошибку по каждому переводу или null, если карты его отправителя.
+     */
+    private List<RuntimeException> checkOwnCards(List<TransferDto> transfers, List<Long> userIds) {
+        Map<Long, Long> owners = cardService.getCardOwners(cardIdsOf(transfers));
+        List<RuntimeException> errors = new ArrayList<>(transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferDto transfer = transfers.get(i);
+            errors.add(ownershipError(owners, transfer.getFromCardId(), userIds.get(i)));
+            if (errors.get(i) == null) {
+                errors.set(i, ownershipError(owners, transfer.getToCardId(), userIds.get(i)));
+            }
+        }
+        return errors;
+    }
+
+    private static RuntimeException ownershipError(Map<Long, Long> owners, Long cardId, Long userId) {
+        Long ownerId = owners.get(cardId);
+        if (ownerId == null) {
+            return new ResourceNotFoundException("Card not found with id: " + cardId);
+        }
+        if (!ownerId.equals(userId)) {
+            return new BusinessException("You can only transfer between your own cards");
+        }
+        return null;
+    }
+
+    private static Set<Long> cardIdsOf(List<TransferDto> transfers) {
+        Set<Long> cardIds = new HashSet<>();
+        for (TransferDto transfer : transfers) {
+            cardIds.add(transfer.getFromCardId());
+            cardIds.add(transfer.getToCardId());
+        }
+        return cardIds;
+    }
+
+    /**
+     * Проверяет перевод с учетом уже принятых переводов и отражает его в балансах.
+     */
+    private void applyTransfer(TransferDto transfer, Long userId, Map<Long, Card> cards,
+                               Map<Long, BigDecimal> balances) {
+        validateBatchTransfer(transfer, cards, balances, userId);
+
+        Card fromCard = cards.get(transfer.getFromCardId());
+        Card toCard = cards.get(transfer.getToCardId());
+        balances.put(fromCard.getId(), balanceOf(fromCard, balances).subtract(transfer.getAmount()));
+        balances.put(toCard.getId(), balanceOf(toCard, balances).add(transfer.getAmount()));
+    }
+
+    private Transaction successfulTransaction(TransferDto transfer, Map<Long, Card> cards) {
+        return Transaction.builder()
+                .fromCard(cards.get(transfer.getFromCardId()))
+                .toCard(cards.get(transfer.getToCardId()))
+                .amount(transfer.getAmount())
+                .status(Transaction.TransactionStatus.SUCCESS)
+                .description(transfer.getDescription())
+                .build();
+    }
+
+    private void validateTransferRequest(TransferDto transfer) {
+        if (transfer.getFromCardId().equals(transfer.getToCardId())) {
+            throw new BusinessException("Cannot transfer to the same card");
+        }
+
+        if (transfer.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new BusinessException("Transfer amount must be positive");
+        }
+    }
+
+    private void validateBatchTransfer(TransferDto transfer, Map<Long, Card> cards,
+                                       Map<Long, BigDecimal> balances, Long userId) {
+        validateTransferRequest(transfer);
+
+        Card fromCard = requireCard(cards, transfer.getFromCardId());
+        Card toCard = requireCard(cards, transfer.getToCardId());
+
+        if (!fromCard.getOwner().getId().equals(userId) || !toCard.getOwner().getId().equals(userId)) {
+            throw new BusinessException("You can only transfer between your own cards");
+        }
+
+        cardService.validateCardForTransaction(fromCard);
+        cardService.validateCardForTransaction(toCard);
+
+        if (balanceOf(fromCard, balances).compareTo(transfer.getAmount()) < 0) {
+            throw new InsufficientFundsException("Insufficient funds on source card");
+        }
+    }
 
-        if (userCards.isEmpty()) {
-            return Page.empty(pageable);
+    private Card requireCard(Map<Long, Card> cards, Long cardId) {
+        Card card = cards.get(cardId);
+        if (card == null) {
+            throw new ResourceNotFoundException("Card not found with id: " + cardId);
         }
+        return card;
+    }
+
+    private BigDecimal balanceOf(Card card, Map<Long, BigDecimal> balances) {
+        return balances.getOrDefault(card.getId(), card.getBalance());
+    }
+
+    private BatchTransferResponse toBatchResponse(BatchTransferRequest.Mode mode, List<BatchTransferItemResult> results) {
+        int succeeded = (int) results.stream()
+                .filter(result -> result.getStatus() == Transaction.TransactionStatus.SUCCESS)
+                .count();
+        return BatchTransferResponse.builder()
+                .mode(mode)
+                .succeeded(succeeded)
+                .failed(results.size() - succeeded)
+                .results(results)
+                .build();
+    }
+
+    /**
+     * Быстрый путь перевода: списание и зачисление выполняются условными UPDATE
+     * без загрузки сущностей карт, результат определяется по числу измененных строк.
+     * UPDATE выполняются в порядке возрастания id карт, как и в {@link #lockCardsInOrder}.
+     */
+    private Transaction transferWithConditionalUpdates(TransferDto transferDto, Long userId) {
+        Long fromCardId = transferDto.getFromCardId();
+        Long toCardId = transferDto.getToCardId();
+        BigDecimal amount = transferDto.getAmount();
 
-        List<Long> cardIds = userCards.stream()
-                .map(CardDto::getId)
+        if (fromCardId < toCardId) {
+            debitOrFail(fromCardId, userId, amount);
+            creditOrFail(toCardId, userId, amount);
+        } else {
+            creditOrFail(toCardId, userId, amount);
+            debitOrFail(fromCardId, userId, amount);
+        }
+
+        Transaction transaction = Transaction.builder()
+                .fromCard(cardService.getCardReference(fromCardId))
+                .toCard(cardService.getCardReference(toCardId))
+                .amount(amount)
+                .status(Transaction.TransactionStatus.SUCCESS)
+                .description(transferDto.getDescription())
+                .build();
+
+        Transaction savedTransaction = transactionRepository.save(transaction);
+        log.info("Transfer completed successfully. Transaction id: {}", savedTransaction.getId());
+
+        return savedTransaction;
+    }
+
+    private void debitOrFail(Long cardId, Long userId, BigDecimal amount) {
+        if (!cardService.debitCard(cardId, userId, amount)) {
+            rejectTransfer(cardId, userId, amount);
+        }
+    }
+
+    private void creditOrFail(Long cardId, Long userId, BigDecimal amount) {
+        if (!cardService.creditCard(cardId, userId, amount)) {
+            rejectTransfer(cardId, userId, null);
+        }
+    }
+
+    /**
+     * Выясняет, почему условный UPDATE не изменил строку, и выбрасывает соответствующее исключение.
+     * Выполняется только на пути отказа; транзакция при этом откатывается.
+     */
+    private void rejectTransfer(Long cardId, Long userId, BigDecimal debitAmount) {
+        Card card = cardService.getCardByIdInternal(cardId);
+
+        if (!card.getOwner().getId().equals(userId)) {
+            throw new BusinessException("You can only transfer between your own cards");
+        }
+
+        cardService.validateCardForTransaction(card);
+
+        if (debitAmount != null && card.getBalance().compareTo(debitAmount) < 0) {
+            throw new InsufficientFundsException("Insufficient funds on source card");
+        }
+
+        throw new BusinessException("Transfer failed: card state changed, please retry");
+    }
+
+    /**
+     * Блокирует строки обеих карт всегда в порядке возрастания id,
+     * чтобы встречные переводы A→B и B→A не приводили к взаимной блокировке.
+     * Возвращает карты в порядке [fromCard, toCard].
+     */
+    private Card[] lockCardsInOrder(Long fromCardId, Long toCardId) {
+        if (fromCardId < toCardId) {
+            Card fromCard = cardService.getCardByIdForUpdate(fromCardId);
+            Card toCard = cardService.getCardByIdForUpdate(toCardId);
+            return new Card[]{fromCard, toCard};
+        }
+        Card toCard = cardService.getCardByIdForUpdate(toCardId);
+        Card fromCard = cardService.getCardByIdForUpdate(fromCardId);
+        return new Card[]{fromCard, toCard};
+    }
+
+    @Transactional(readOnly = true)
+    public Page<TransactionView> getUserTransactions(Long userId, Pageable pageable) {
+        // Порядок фиксирован (новые сначала): параметр sort запроса не применяется
+        List<TransactionView> transactions = transactionRepository.findHistoryByOwnerId(
+                        userId, pageable.getOffset() + pageable.getPageSize(), pageable.getPageSize(), pageable.getOffset())
+                .stream()
+                .map(this::toView)
                 .toList();
+        return PageableExecutionUtils.getPage(transactions, pageable,
+                () -> transactionRepository.countHistoryByOwnerId(userId));
+    }
 
-        return transactionRepository.findByFromCardIdInOrToCardIdIn(cardIds, cardIds, pageable);
+    @Transactional(readOnly = true)
+    public Page<TransactionView> getCardTransactions(Long cardId, Pageable pageable) {
+        return transactionRepository.findViewsByCardId(cardId, pageable).map(this::mask);
     }
 
+    /**
+     * История карты по страницам для ее владельца; чужая карта — AccessDeniedException (403).
+     */
     @Transactional(readOnly = true)
-    public Page<Transaction> getCardTransactions(Long cardId, Pageable pageable) {
-        return transactionRepository.findByFromCardIdOrToCardId(cardId, cardId, pageable);
+    public Page<TransactionView> getCardTransactions(Long cardId, Long userId, Pageable pageable) {
+        if (!cardService.isCardOwner(cardId, userId)) {
+            throw new AccessDeniedException("Card doesn't belong to user");
+        }
+        return getCardTransactions(cardId, pageable);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<TransactionView> getUserTransactions(Long userId, String cursor, int size) {
+        List<Long> cardIds = cardService.getUserCardIds(userId);
+
+        if (cardIds.isEmpty()) {
+            return CursorPage.<TransactionView>builder().items(List.of()).build();
+        }
+        return seekTransactions(cardIds, cursor, size);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<TransactionView> getCardTransactions(Long cardId, String cursor, int size) {
+        return seekTransactions(List.of(cardId), cursor, size);
+    }
+
+    /**
+     * История карты по курсору для ее владельца; чужая карта — AccessDeniedException (403).
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<TransactionView> getCardTransactions(Long cardId, Long userId, String cursor, int size) {
+        if (!cardService.isCardOwner(cardId, userId)) {
+            throw new AccessDeniedException("Card doesn't belong to user");
+        }
+        return seekTransactions(List.of(cardId), cursor, size);
+    }
+
+    /**
+     * Постраничный вывод по ключу (created_at, id) в порядке убывания.
+     * Исходящие и входящие транзакции выбираются отдельными запросами, каждый по своему индексу
+     * и не более чем на size + 1 строк, затем сливаются; лишняя строка показывает, что есть следующая страница.
+     */
+    private CursorPage<TransactionView> seekTransactions(Collection<Long> cardIds, String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BusinessException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        CursorUtil.Cursor position = cursor != null ? cursorUtil.decode(cursor) : FIRST_PAGE;
+        Limit limit = Limit.of(size + 1);
+
+        List<TransactionView> outgoing = transactionRepository.findOutgoingBefore(
+                cardIds, position.createdAt(), position.id(), limit);
+        List<TransactionView> incoming = transactionRepository.findIncomingBefore(
+                cardIds, position.createdAt(), position.id(), limit);
+
+        // Перевод между своими картами попадает в обе выборки
+        Map<Long, TransactionView> merged = new LinkedHashMap<>();
+        Stream.concat(outgoing.stream(), incoming.stream())
+                .sorted(Comparator.comparing(TransactionView::getCreatedAt)
+                        .thenComparing(TransactionView::getId)
+                        .reversed())
+                .forEach(transaction -> merged.putIfAbsent(transaction.getId(), transaction));
+
+        List<TransactionView> items = merged.values().stream().limit(size).map(this::mask).toList();
+        String nextCursor = null;
+        if (merged.size() > size) {
+            TransactionView last = items.get(items.size() - 1);
+            nextCursor = cursorUtil.encode(last.getCreatedAt(), last.getId());
+        }
+
+        return CursorPage.<TransactionView>builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Собирает представление из уже загруженной транзакции.
+     * Id карт берутся из прокси без обращения к БД; для масок номеров читается pan_last4 карт
+     * (после перевода карты уже загружены, при повторе по Idempotency-Key подгружаются).
+     */
+    public TransactionView toView(Transaction transaction) {
+        return mask(TransactionView.builder()
+                .id(transaction.getId())
+                .fromCardId(transaction.getFromCard().getId())
+                .toCardId(transaction.getToCard().getId())
+                .amount(transaction.getAmount())
+                .status(transaction.getStatus())
+                .description(transaction.getDescription())
+                .failureReason(transaction.getFailureReason())
+                .createdAt(transaction.getCreatedAt())
+                .fromCardLast4(transaction.getFromCard().getPanLast4())
+                .toCardLast4(transaction.getToCard().getPanLast4())
+                .build());
+    }
+
+    private TransactionView toView(TransactionHistoryRow row) {
+        return mask(TransactionView.builder()
+                .id(row.getId())
+                .fromCardId(row.getFromCardId())
+                .toCardId(row.getToCardId())
+                .amount(row.getAmount())
+                .status(row.getStatus())
+                .description(row.getDescription())
+                .failureReason(row.getFailureReason())
+                .createdAt(row.getCreatedAt())
+                .fromCardLast4(row.getFromCardLast4())
+                .toCardLast4(row.getToCardLast4())
+                .build());
+    }
+
+    /**
+     * Единственное место, где строятся маски номеров в TransactionView: одинаково для всех эндпоинтов.
+     */
+    private TransactionView mask(TransactionView view) {
+        view.setFromCardMasked(cardMaskingUtil.maskLastFour(view.getFromCardLast4()));
+        view.setToCardMasked(cardMaskingUtil.maskLastFour(view.getToCardLast4()));
+        return view;
     }
 }
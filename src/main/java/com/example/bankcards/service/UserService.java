@@ -8,16 +8,22 @@ import com.example.bankcards.exception.BusinessException;
 import com.example.bankcards.exception.ResourceNotFoundException;
 import com.example.bankcards.repository.RoleRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.PasswordHasher;
+import com.example.bankcards.security.UserSecurityVersions;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,7 +33,8 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
+    private final UserSecurityVersions userSecurityVersions;
 
     @Transactional
     public UserDto registerUser(UserRegistrationDto registrationDto) {
@@ -44,7 +51,7 @@ public class UserService {
         User user = User.builder()
                 .username(registrationDto.getUsername())
                 .email(registrationDto.getEmail())
-                .password(passwordEncoder.encode(registrationDto.getPassword()))
+                .password(passwordHasher.encode(registrationDto.getPassword()))
                 .firstName(registrationDto.getFirstName())
                 .lastName(registrationDto.getLastName())
                 .enabled(true)
@@ -75,6 +82,20 @@ public class UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + id));
     }
 
+    /**
+     * Загружает пользователей одним запросом. Если хотя бы один id не найден, бросает исключение со списком отсутствующих.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, User> getUsersByIds(Collection<Long> ids) {
+        Map<Long, User> users = userRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        List<Long> missing = ids.stream().filter(id -> !users.containsKey(id)).distinct().sorted().toList();
+        if (!missing.isEmpty()) {
+            throw new ResourceNotFoundException("Users not found with ids: " + missing);
+        }
+        return users;
+    }
+
     @Transactional(readOnly = true)
     public User getUserByUsername(String username) {
         User user = userRepository.findByUsername(username)
@@ -82,6 +103,25 @@ public class UserService {
         return user;
     }
 
+    /**
+     * Пользователь вместе с ролями одним обращением; пустой Optional, если имени нет.
+     */
+    @Transactional(readOnly = true)
+    public Optional<User> findUserByUsername(String username) {
+        return userRepository.findByUsername(username);
+    }
+
+    /**
+     * Заменяет хэш пароля тем же паролем с новой стоимостью. Версия безопасности не меняется:
+     * пароль прежний, и выданные токены остаются действительными.
+     * Хэш заменяется, только если в базе все еще currentHash: пароль, смененный после проверки,
+     * не перезаписывается хэшем старого. Возвращает false, если хэш уже другой.
+     */
+    @Transactional
+    public boolean updatePasswordHash(Long userId, String currentHash, String encodedPassword) {
+        return userRepository.updatePasswordIfUnchanged(userId, currentHash, encodedPassword) > 0;
+    }
+
     @Transactional(readOnly = true)
     public Page<UserDto> getAllUsers(Pageable pageable) {
         return userRepository.findAll(pageable)
@@ -105,13 +145,21 @@ public class UserService {
             throw new BusinessException("Email is already in use");
         }
 
+        // Имя пользователя записано в выданных токенах как subject
+        boolean revokeTokens = !user.getUsername().equals(updateDto.getUsername());
+
         user.setUsername(updateDto.getUsername());
         user.setEmail(updateDto.getEmail());
         user.setFirstName(updateDto.getFirstName());
         user.setLastName(updateDto.getLastName());
 
         if (updateDto.getPassword() != null && !updateDto.getPassword().isEmpty()) {
-            user.setPassword(passwordEncoder.encode(updateDto.getPassword()));
+            user.setPassword(passwordHasher.encode(updateDto.getPassword()));
+            revokeTokens = true;
+        }
+
+        if (revokeTokens) {
+            revokeTokens(user);
         }
 
         User updatedUser = userRepository.save(user);
@@ -124,6 +172,7 @@ public class UserService {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + id));
         userRepository.delete(user);
+        userSecurityVersions.removeAfterCommit(id);
     }
 
     @Transactional
@@ -137,6 +186,7 @@ public class UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("Role not found: " + roleName));
 
         user.addRole(role);
+        revokeTokens(user);
         User updatedUser = userRepository.save(user);
         return mapToDto(updatedUser);
     }
@@ -152,6 +202,7 @@ public class UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("Role not found: " + roleName));
 
         user.removeRole(role);
+        revokeTokens(user);
         User updatedUser = userRepository.save(user);
         return mapToDto(updatedUser);
     }
@@ -164,10 +215,20 @@ public class UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
 
         user.setEnabled(!user.getEnabled());
+        revokeTokens(user);
         User updatedUser = userRepository.save(user);
         return mapToDto(updatedUser);
     }
 
+    /**
+     * Увеличивает версию безопасности: выданные пользователю токены перестают приниматься
+     * (JwtAuthenticationFilter сверяет claim ver с UserSecurityVersions).
+     */
+    private void revokeTokens(User user) {
+        user.setSecurityVersion(user.getSecurityVersion() + 1);
+        userSecurityVersions.updateAfterCommit(user.getId(), user.getSecurityVersion());
+    }
+
     private UserDto mapToDto(User user) {
         Set<String> roles = user.getRoles().stream()
                 .map(role -> role.getName().name())
@@ -0,0 +1,49 @@
+package com.example.bankcards.util;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+
+/**
+ * Отпечаток номера карты для поиска и проверки уникальности: HMAC-SHA256 с отдельным ключом, 64 hex-символа.
+ * Не зависит от режима шифрования номера, поэтому поиск работает и при недетерминированном шифровании.
+ */
+@Component
+public class CardFingerprintUtil {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    @Value("${encryption.fingerprint-key}")
+    private String fingerprintKey;
+
+    private ThreadLocal<Mac> mac;
+
+    @PostConstruct
+    void init() {
+        SecretKeySpec key = new SecretKeySpec(fingerprintKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(ALGORITHM);
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(ALGORITHM + " is not available", e);
+            }
+        });
+    }
+
+    /**
+     * Вычисляет отпечаток номера карты. Пробелы и дефисы в номере не учитываются.
+     */
+    public String fingerprint(String cardNumber) {
+        String digits = cardNumber.replace(" ", "").replace("-", "");
+        // doFinal возвращает Mac в исходное состояние с тем же ключом
+        return HexFormat.of().formatHex(mac.get().doFinal(digits.getBytes(StandardCharsets.US_ASCII)));
+    }
+}
@@ -7,6 +7,7 @@ public class CardMaskingUtil {
 
     private static final String MASK_CHAR = "*";
     private static final int VISIBLE_DIGITS = 4;
+    private static final String MASKED_PREFIX = "**** **** **** ";
 
     /**
      * Маскирует номер карты, оставляя видимыми последние 4 цифры
@@ -25,19 +26,19 @@ public class CardMaskingUtil {
         }
 
         // Получаем последние 4 цифры
-        String lastFour = cleanNumber.substring(cleanNumber.length() - VISIBLE_DIGITS);
+        return maskLastFour(cleanNumber.substring(cleanNumber.length() - VISIBLE_DIGITS));
+    }
 
-        // Создаем маску
-        StringBuilder masked = new StringBuilder();
-        for (int i = 0; i < 12; i++) {
-            if (i > 0 && i % 4 == 0) {
-                masked.append(" ");
-            }
-            masked.append(MASK_CHAR);
+    /**
+     * Строит маску по сохраненным последним 4 цифрам, не требуя полного номера
+     * Пример: 3456 -> **** **** **** 3456
+     */
+    public String maskLastFour(String lastFour) {
+        if (lastFour == null || lastFour.length() != VISIBLE_DIGITS) {
+            return MASK_CHAR.repeat(16);
         }
-        masked.append(" ").append(lastFour);
 
-        return masked.toString();
+        return MASKED_PREFIX + lastFour;
     }
 
     /**
@@ -1,5 +1,6 @@
 package com.example.bankcards.util;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -7,33 +8,64 @@ import org.springframework.stereotype.Component;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.List;
+import java.util.stream.IntStream;
 
+/**
+ * Шифрование номеров карт и CVV.
+ * Ключ вычисляется один раз при старте, экземпляры Cipher создаются по одному на поток и переиспользуются:
+ * в режиме без вектора инициализации doFinal возвращает шифр в исходное состояние.
+ */
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class EncryptionUtil {
 
+    /**
+     * Размер части пакета, которую обрабатывает один поток.
+     */
+    private static final int BATCH_CHUNK_SIZE = 256;
+
     @Value("${encryption.secret-key}")
     private String secretKey;
 
     @Value("${encryption.algorithm:AES}")
     private String algorithm;
 
+    @Value("${encryption.parallel-threshold:2048}")
+    private int parallelThreshold;
+
+    private SecretKeySpec key;
+    private ThreadLocal<Cipher> encryptCipher;
+    private ThreadLocal<Cipher> decryptCipher;
+
+    @PostConstruct
+    void init() {
+        try {
+            key = generateKey();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Encryption key cannot be derived", e);
+        }
+        encryptCipher = ThreadLocal.withInitial(() -> newCipher(Cipher.ENCRYPT_MODE));
+        decryptCipher = ThreadLocal.withInitial(() -> newCipher(Cipher.DECRYPT_MODE));
+    }
+
     /**
      * Шифрует строку
      */
     public String encrypt(String data) {
         try {
-            SecretKeySpec key = generateKey();
-            Cipher cipher = Cipher.getInstance(algorithm);
-            cipher.init(Cipher.ENCRYPT_MODE, key);
-            byte[] encryptedBytes = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
+            byte[] encryptedBytes = encryptCipher.get().doFinal(data.getBytes(StandardCharsets.UTF_8));
             return Base64.getEncoder().encodeToString(encryptedBytes);
         } catch (Exception e) {
+            // Состояние шифра после ошибки не гарантировано, поток создаст новый
+            encryptCipher.remove();
             log.error("Error encrypting data", e);
             throw new RuntimeException("Encryption failed", e);
         }
@@ -44,26 +76,121 @@ public class EncryptionUtil {
      */
     public String decrypt(String encryptedData) {
         try {
-            SecretKeySpec key = generateKey();
-            Cipher cipher = Cipher.getInstance(algorithm);
-            cipher.init(Cipher.DECRYPT_MODE, key);
             byte[] decodedBytes = Base64.getDecoder().decode(encryptedData);
-            byte[] decryptedBytes = cipher.doFinal(decodedBytes);
+            byte[] decryptedBytes = decryptCipher.get().doFinal(decodedBytes);
             return new String(decryptedBytes, StandardCharsets.UTF_8);
         } catch (Exception e) {
+            decryptCipher.remove();
             log.error("Error decrypting data", e);
             throw new RuntimeException("Decryption failed", e);
         }
     }
 
+    /**
+     * Шифрует список строк, сохраняя порядок.
+     * Большие пакеты делятся на части и обрабатываются параллельно.
+     */
+    public List<String> encryptAll(List<String> data) {
+        String[] result = new String[data.size()];
+        forEachChunk(data.size(), (from, to) -> encryptChunk(data, result, from, to));
+        return Arrays.asList(result);
+    }
+
+    /**
+     * Расшифровывает список строк, сохраняя порядок.
+     * Большие пакеты делятся на части и обрабатываются параллельно.
+     */
+    public List<String> decryptAll(List<String> encryptedData) {
+        String[] result = new String[encryptedData.size()];
+        forEachChunk(encryptedData.size(), (from, to) -> decryptChunk(encryptedData, result, from, to));
+        return Arrays.asList(result);
+    }
+
+    private void forEachChunk(int size, ChunkTask task) {
+        if (size < parallelThreshold) {
+            task.run(0, size);
+            return;
+        }
+        int chunks = (size + BATCH_CHUNK_SIZE - 1) / BATCH_CHUNK_SIZE;
+        IntStream.range(0, chunks)
+                .parallel()
+                .forEach(chunk -> task.run(chunk * BATCH_CHUNK_SIZE, Math.min(size, (chunk + 1) * BATCH_CHUNK_SIZE)));
+    }
+
+    private void encryptChunk(List<String> data, String[] result, int from, int to) {
+        Cipher cipher = encryptCipher.get();
+        Base64.Encoder encoder = Base64.getEncoder();
+        // Буфер под шифротекст общий для всей части пакета
+        byte[] buffer = new byte[0];
+        try {
+            for (int i = from; i < to; i++) {
+                byte[] plain = data.get(i).getBytes(StandardCharsets.UTF_8);
+                int outputSize = cipher.getOutputSize(plain.length);
+                if (buffer.length < outputSize) {
+                    buffer = new byte[outputSize];
+                }
+                int length = cipher.doFinal(plain, 0, plain.length, buffer, 0);
+                ByteBuffer encoded = encoder.encode(ByteBuffer.wrap(buffer, 0, length));
+                result[i] = new String(encoded.array(), 0, encoded.limit(), StandardCharsets.ISO_8859_1);
+            }
+        } catch (Exception e) {
+            encryptCipher.remove();
+            log.error("Error encrypting data", e);
+            throw new RuntimeException("Encryption failed", e);
+        }
+    }
+
+    private void decryptChunk(List<String> encryptedData, String[] result, int from, int to) {
+        Cipher cipher = decryptCipher.get();
+        Base64.Decoder decoder = Base64.getDecoder();
+        // Буферы под декодированный шифротекст и открытый текст общие для всей части пакета
+        byte[] decoded = new byte[0];
+        byte[] buffer = new byte[0];
+        try {
+            for (int i = from; i < to; i++) {
+                byte[] encoded = encryptedData.get(i).getBytes(StandardCharsets.ISO_8859_1);
+                int maxDecoded = encoded.length / 4 * 3;
+                if (decoded.length < maxDecoded) {
+                    decoded = new byte[maxDecoded];
+                }
+                int decodedLength = decoder.decode(encoded, decoded);
+                int outputSize = cipher.getOutputSize(decodedLength);
+                if (buffer.length < outputSize) {
+                    buffer = new byte[outputSize];
+                }
+                int length = cipher.doFinal(decoded, 0, decodedLength, buffer, 0);
+                result[i] = new String(buffer, 0, length, StandardCharsets.UTF_8);
+            }
+        } catch (Exception e) {
+            decryptCipher.remove();
+            log.error("Error decrypting data", e);
+            throw new RuntimeException("Decryption failed", e);
+        }
+    }
+
+    private Cipher newCipher(int mode) {
+        try {
+            Cipher cipher = Cipher.getInstance(algorithm);
+            cipher.init(mode, key);
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cipher " + algorithm + " is not available", e);
+        }
+    }
+
     /**
      * Генерирует ключ шифрования из секретной строки
      */
-    private SecretKeySpec generateKey() throws Exception {
+    private SecretKeySpec generateKey() throws GeneralSecurityException {
         MessageDigest sha = MessageDigest.getInstance("SHA-256");
         byte[] key = secretKey.getBytes(StandardCharsets.UTF_8);
         key = sha.digest(key);
         key = Arrays.copyOf(key, 16); // AES-128
         return new SecretKeySpec(key, algorithm);
     }
+
+    @FunctionalInterface
+    private interface ChunkTask {
+        void run(int from, int to);
+    }
 }
@@ -0,0 +1,132 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.dto.AuthRequest;
+import com.example.bankcards.dto.CardCreateDto;
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.dto.UserDto;
+import com.example.bankcards.dto.UserRegistrationDto;
+import com.example.bankcards.service.AuthService;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.TransferService;
+import com.example.bankcards.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Доступ к истории карты (по курсору и по страницам) на H2: владелец видит историю с маскированными
+ * номерами обеих карт, другой пользователь получает 403.
+ */
+@SpringBootTest(properties = "transfer.settlement.enabled=false")
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class TransferControllerAccessTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private TransferService transferService;
+
+    private CardDto card;
+    private CardDto secondCard;
+    private String ownerToken;
+    private String otherToken;
+
+    @BeforeEach
+    void setUp() {
+        UserDto owner = register("owner-");
+        UserDto other = register("other-");
+        card = createCard(owner);
+        secondCard = createCard(owner);
+        transferService.transferBetweenOwnCards(TransferDto.builder()
+                .fromCardId(card.getId())
+                .toCardId(secondCard.getId())
+                .amount(new BigDecimal("1.00"))
+                .build(), owner.getId());
+        ownerToken = authService.authenticate(new AuthRequest(owner.getUsername(), "password123")).getToken();
+        otherToken = authService.authenticate(new AuthRequest(other.getUsername(), "password123")).getToken();
+    }
+
+    @Test
+    void cardTransactionsByCursor_Owner_ReturnsHistory() throws Exception {
+        getCursorPage(ownerToken)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].fromCardMasked").value(card.getMaskedCardNumber()))
+                .andExpect(jsonPath("$.items[0].toCardMasked").value(secondCard.getMaskedCardNumber()));
+    }
+
+    @Test
+    void myTransactions_Owner_MasksCardsLikeCardHistory() throws Exception {
+        mockMvc.perform(get("/api/transfers/my-transactions")
+                        .header("Authorization", "Bearer " + ownerToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].fromCardMasked").value(card.getMaskedCardNumber()))
+                .andExpect(jsonPath("$.content[0].toCardMasked").value(secondCard.getMaskedCardNumber()))
+                .andExpect(jsonPath("$.content[0].fromCardLast4").doesNotExist());
+    }
+
+    @Test
+    void cardTransactionsByCursor_ForeignCard_Returns403() throws Exception {
+        getCursorPage(otherToken).andExpect(status().isForbidden());
+    }
+
+    @Test
+    void cardTransactions_Owner_ReturnsHistory() throws Exception {
+        getPage(ownerToken)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].fromCardMasked").value(card.getMaskedCardNumber()));
+    }
+
+    @Test
+    void cardTransactions_ForeignCard_Returns403() throws Exception {
+        getPage(otherToken).andExpect(status().isForbidden());
+    }
+
+    private UserDto register(String prefix) {
+        String username = prefix + System.nanoTime();
+        return userService.registerUser(new UserRegistrationDto(
+                username, username + "@example.com", "password123", "Test", "User"));
+    }
+
+    private CardDto createCard(UserDto owner) {
+        return cardService.createCard(CardCreateDto.builder()
+                .cardHolder("CARD OWNER")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .initialBalance(new BigDecimal("10.00"))
+                .ownerId(owner.getId())
+                .build());
+    }
+
+    private ResultActions getPage(String token) throws Exception {
+        return mockMvc.perform(get("/api/transfers/card/" + card.getId())
+                .header("Authorization", "Bearer " + token));
+    }
+
+    private ResultActions getCursorPage(String token) throws Exception {
+        return mockMvc.perform(get("/api/transfers/card/" + card.getId() + "/cursor")
+                .header("Authorization", "Bearer " + token));
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.dto.AuthRequest;
+import com.example.bankcards.dto.UserDto;
+import com.example.bankcards.dto.UserRegistrationDto;
+import com.example.bankcards.service.AuthService;
+import com.example.bankcards.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Доступ к actuator на H2: health публичен, метрики читает только ADMIN.
+ */
+@SpringBootTest(properties = "transfer.settlement.enabled=false")
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class ActuatorSecurityTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void health_Anonymous_IsPublic() throws Exception {
+        mockMvc.perform(get("/actuator/health")).andExpect(status().isOk());
+    }
+
+    @Test
+    void metrics_Anonymous_Returns401() throws Exception {
+        mockMvc.perform(get("/actuator/metrics")).andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/metrics/jvm.memory.used")).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void metrics_User_Returns403() throws Exception {
+        String token = login(register());
+
+        mockMvc.perform(get("/actuator/metrics").header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void metrics_Admin_ReturnsMetrics() throws Exception {
+        UserDto admin = register();
+        userService.assignRoleToUser(admin.getId(), "ROLE_ADMIN");
+        String token = login(admin);
+
+        mockMvc.perform(get("/actuator/metrics").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+    }
+
+    private UserDto register() {
+        String username = "actuator-" + System.nanoTime();
+        return userService.registerUser(new UserRegistrationDto(
+                username, username + "@example.com", "password123", "Test", "User"));
+    }
+
+    private String login(UserDto user) {
+        return authService.authenticate(new AuthRequest(user.getUsername(), "password123")).getToken();
+    }
+}
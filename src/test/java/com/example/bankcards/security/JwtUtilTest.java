@@ -0,0 +1,86 @@
+package com.example.bankcards.security;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilTest {
+
+    private static final String SECRET = "testSecretKeyForJWTTokenGenerationMustBeLongEnough12345";
+
+    private SimpleMeterRegistry meterRegistry;
+    private JwtUtil jwtUtil;
+    private UserDetails userDetails;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        jwtUtil = jwtUtil(SECRET, 60_000L);
+        userDetails = new User("testuser", "password", List.of(new SimpleGrantedAuthority("ROLE_USER")));
+    }
+
+    @Test
+    void parseToken_RepeatedToken_VerifiesSignatureOnce() {
+        // Arrange
+        String token = jwtUtil.generateToken(userDetails, 42L, 3L);
+
+        // Act
+        Optional<Claims> first = jwtUtil.parseToken(token);
+        Optional<Claims> second = jwtUtil.parseToken(token);
+
+        // Assert
+        assertTrue(first.isPresent());
+        assertSame(first.get(), second.get());
+        assertEquals("testuser", first.get().getSubject());
+        assertEquals(42L, JwtUtil.userId(first.get()));
+        assertEquals(3L, JwtUtil.securityVersion(first.get()));
+        assertEquals(List.of("ROLE_USER"), JwtUtil.roles(first.get()));
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "jwt.verified").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    void parseToken_TamperedOrForeignToken_ReturnsEmpty() {
+        // Arrange
+        String token = jwtUtil.generateToken(userDetails, 42L, 3L);
+        String foreign = jwtUtil("otherSecretKeyForJWTTokenGenerationMustBeLongEnough67890", 60_000L)
+                .generateToken(userDetails, 42L, 3L);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        // Act & Assert
+        assertTrue(jwtUtil.parseToken(foreign).isEmpty());
+        assertTrue(jwtUtil.parseToken(tampered).isEmpty());
+        assertTrue(jwtUtil.parseToken("not-a-token").isEmpty());
+        assertFalse(jwtUtil.validateToken(foreign));
+    }
+
+    @Test
+    void parseToken_ExpiredToken_ReturnsEmpty() {
+        // Arrange
+        String token = jwtUtil(SECRET, -1_000L).generateToken(userDetails, 42L, 3L);
+
+        // Act & Assert
+        assertTrue(jwtUtil.parseToken(token).isEmpty());
+        assertNull(jwtUtil.extractUserIdFromToken(token));
+    }
+
+    private JwtUtil jwtUtil(String secret, long expiration) {
+        JwtUtil util = new JwtUtil(meterRegistry);
+        ReflectionTestUtils.setField(util, "secret", secret);
+        ReflectionTestUtils.setField(util, "expiration", expiration);
+        ReflectionTestUtils.setField(util, "verifiedCacheEnabled", true);
+        ReflectionTestUtils.setField(util, "verifiedCacheMaximumSize", 100L);
+        util.init();
+        return util;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.ServiceBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHasherTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CountDownLatch entered;
+    private CountDownLatch release;
+    private PasswordHasher passwordHasher;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        entered = new CountDownLatch(1);
+        release = new CountDownLatch(0);
+        // Проверка пароля ждет release, чтобы тест мог занять пул
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(6) {
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                entered.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.matches(rawPassword, encodedPassword);
+            }
+        };
+        passwordHasher = new PasswordHasher(encoder, meterRegistry);
+        ReflectionTestUtils.setField(passwordHasher, "threads", 1);
+        ReflectionTestUtils.setField(passwordHasher, "queueCapacity", 1);
+        ReflectionTestUtils.setField(passwordHasher, "timeout", Duration.ofSeconds(5));
+        passwordHasher.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        passwordHasher.shutdown();
+    }
+
+    @Test
+    void matches_ChecksPasswordAndUnknownUser() {
+        // Arrange
+        String encoded = passwordHasher.encode("password123");
+
+        // Act & Assert
+        assertTrue(passwordHasher.matches("password123", encoded));
+        assertFalse(passwordHasher.matches("wrong", encoded));
+        assertFalse(passwordHasher.matches("password123", null));
+    }
+
+    @Test
+    void matches_PoolAndQueueFull_RejectsImmediately() throws Exception {
+        // Arrange: один поток занят, одна проверка ждет в очереди
+        String encoded = passwordHasher.encode("password123");
+        entered = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        Future<Boolean> running = callers.submit(() -> passwordHasher.matches("password123", encoded));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        Future<Boolean> queued = callers.submit(() -> passwordHasher.matches("password123", encoded));
+        while (meterRegistry.get("security.password.hashing.queue").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+
+        // Act & Assert
+        assertThrows(ServiceBusyException.class, () -> passwordHasher.matches("password123", encoded));
+        assertEquals(1, meterRegistry.get("security.password.hashing.rejected").counter().count());
+        release.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+        callers.shutdown();
+    }
+
+    @Test
+    void upgradeEncoding_LowerCost_ReturnsTrue() {
+        // Act & Assert
+        assertTrue(passwordHasher.upgradeEncoding(new BCryptPasswordEncoder(4).encode("password123")));
+        assertFalse(passwordHasher.upgradeEncoding(passwordHasher.encode("password123")));
+    }
+}
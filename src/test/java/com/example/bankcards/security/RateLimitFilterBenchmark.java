@@ -0,0 +1,137 @@
+package com.example.bankcards.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH-замер накладных расходов RateLimitFilter на разрешенный запрос: среднее время и байт на запрос (gc.alloc.rate.norm).
+ * "baseline" — только вызов следующего фильтра, "unmatched" — запрос вне лимитируемых маршрутов,
+ * "userKey" и "ipKey" — списание токена из корзины пользователя (1000 разных id) или IP.
+ * Лимиты заведомо не достигаются, замеряется путь без отказа.
+ * Запуск: ./mvnw test -Dtest=RateLimitFilterBenchmark -Dbenchmark.jmh=true
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(0)
+public class RateLimitFilterBenchmark {
+
+    private static final int USERS = 1000;
+
+    private final FilterChain chain = (request, response) -> { };
+
+    private RateLimitFilter filter;
+    private MockHttpServletRequest unmatchedRequest;
+    private MockHttpServletRequest transferRequest;
+    private MockHttpServletRequest loginRequest;
+    private MockHttpServletResponse response;
+    private UsernamePasswordAuthenticationToken[] users;
+    private int nextUser;
+
+    @Setup
+    public void setUp() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRoutes(List.of(
+                route("/api/auth/login", RateLimitProperties.KeyType.IP),
+                route("/api/auth/refresh", RateLimitProperties.KeyType.IP),
+                route("/api/transfers/**", RateLimitProperties.KeyType.USER)));
+        filter = new RateLimitFilter(properties, new SimpleMeterRegistry());
+        filter.init();
+
+        unmatchedRequest = new MockHttpServletRequest("GET", "/api/cards/my-cards");
+        transferRequest = new MockHttpServletRequest("POST", "/api/transfers");
+        loginRequest = new MockHttpServletRequest("POST", "/api/auth/login");
+        loginRequest.setRemoteAddr("10.0.0.1");
+        response = new MockHttpServletResponse();
+
+        users = new UsernamePasswordAuthenticationToken[USERS];
+        for (int i = 0; i < USERS; i++) {
+            AuthenticatedUser user = new AuthenticatedUser((long) i + 1, "user" + i, List.of(), null, null);
+            users[i] = new UsernamePasswordAuthenticationToken(user, null, user.authorities());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public Object baseline() throws ServletException, IOException {
+        chain.doFilter(unmatchedRequest, response);
+        return response;
+    }
+
+    @Benchmark
+    public Object unmatched() throws ServletException, IOException {
+        return filter(unmatchedRequest);
+    }
+
+    @Benchmark
+    public Object userKey() throws ServletException, IOException {
+        SecurityContextHolder.getContext().setAuthentication(users[nextUser++ % USERS]);
+        return filter(transferRequest);
+    }
+
+    @Benchmark
+    public Object ipKey() throws ServletException, IOException {
+        return filter(loginRequest);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.jmh", matches = "true")
+    void runBenchmarks() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RateLimitFilterBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+
+    private Object filter(MockHttpServletRequest request) throws ServletException, IOException {
+        // OncePerRequestFilter отмечает запрос атрибутом; снимаем его, чтобы фильтр отработал снова
+        request.clearAttributes();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private static RateLimitProperties.Route route(String path, RateLimitProperties.KeyType key) {
+        RateLimitProperties.Route route = new RateLimitProperties.Route();
+        route.setName(path);
+        route.setMethod("POST");
+        route.setPath(path);
+        route.setKey(key);
+        route.setLimit(Integer.MAX_VALUE);
+        route.setPeriod(Duration.ofSeconds(1));
+        return route;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.bankcards.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRoutes(List.of(
+                route("login", "POST", "/api/auth/login", RateLimitProperties.KeyType.IP, 3, Duration.ofMinutes(1)),
+                route("transfers", "POST", "/api/transfers/**", RateLimitProperties.KeyType.USER, 2,
+                        Duration.ofMinutes(1))));
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new RateLimitFilter(properties, meterRegistry);
+        filter.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilter_OverLimit_Returns429WithRetryAfter() throws Exception {
+        // Arrange
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, perform("POST", "/api/auth/login", "10.0.0.1").getStatus());
+        }
+
+        // Act
+        MockHttpServletResponse response = perform("POST", "/api/auth/login", "10.0.0.1");
+
+        // Assert
+        assertEquals(429, response.getStatus());
+        // Один токен восстанавливается за 20 секунд
+        assertEquals("20", response.getHeader("Retry-After"));
+        assertEquals(1.0, meterRegistry.get("rate-limit.rejected").tag("route", "login").counter().count());
+        assertEquals(200, perform("POST", "/api/auth/login", "10.0.0.2").getStatus());
+    }
+
+    @Test
+    void doFilter_UserKey_CountsPerUserAndFallsBackToIp() throws Exception {
+        // Arrange
+        authenticate(1L);
+        perform("POST", "/api/transfers", "10.0.0.1");
+        perform("POST", "/api/transfers/batch", "10.0.0.1");
+
+        // Act
+        MockHttpServletResponse limited = perform("POST", "/api/transfers", "10.0.0.1");
+        authenticate(2L);
+        MockHttpServletResponse otherUser = perform("POST", "/api/transfers", "10.0.0.1");
+        SecurityContextHolder.clearContext();
+        MockHttpServletResponse anonymous = perform("POST", "/api/transfers", "10.0.0.1");
+
+        // Assert
+        assertEquals(429, limited.getStatus());
+        assertEquals(200, otherUser.getStatus());
+        assertEquals(200, anonymous.getStatus());
+    }
+
+    @Test
+    void doFilter_UnmatchedRoute_IsNotLimited() throws Exception {
+        // Arrange
+        authenticate(1L);
+
+        // Act & Assert
+        for (int i = 0; i < 10; i++) {
+            assertEquals(200, perform("GET", "/api/transfers", "10.0.0.1").getStatus());
+            assertEquals(200, perform("POST", "/api/transfersx", "10.0.0.1").getStatus());
+        }
+    }
+
+    @Test
+    void evictIdleBuckets_KeepsBucketsInDeficit() throws Exception {
+        // Arrange
+        for (int i = 0; i < 3; i++) {
+            perform("POST", "/api/auth/login", "10.0.0.1");
+        }
+
+        // Act
+        filter.evictIdleBuckets();
+
+        // Assert
+        assertEquals(429, perform("POST", "/api/auth/login", "10.0.0.1").getStatus());
+    }
+
+    private MockHttpServletResponse perform(String method, String path, String remoteAddr) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setRemoteAddr(remoteAddr);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static void authenticate(Long userId) {
+        AuthenticatedUser user = new AuthenticatedUser(userId, "user" + userId, List.of(), null, null);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.authorities()));
+    }
+
+    private static RateLimitProperties.Route route(String name, String method, String path,
+                                                   RateLimitProperties.KeyType key, int limit, Duration period) {
+        RateLimitProperties.Route route = new RateLimitProperties.Route();
+        route.setName(name);
+        route.setMethod(method);
+        route.setPath(path);
+        route.setKey(key);
+        route.setLimit(limit);
+        route.setPeriod(period);
+        return route;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.bankcards.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * RateLimitFilter в цепочке безопасности на H2: вход сверх лимита отклоняется 429 до проверки пароля.
+ * Список маршрутов в свойствах теста заменяет список из application.yml целиком.
+ */
+@SpringBootTest(properties = {
+        "transfer.settlement.enabled=false",
+        "rate-limit.routes[0].name=login",
+        "rate-limit.routes[0].method=POST",
+        "rate-limit.routes[0].path=/api/auth/login",
+        "rate-limit.routes[0].key=ip",
+        "rate-limit.routes[0].limit=2",
+        "rate-limit.routes[0].period=PT1M"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class RateLimitIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void login_OverLimit_Returns429BeforeAuthentication() throws Exception {
+        // Arrange
+        login().andExpect(status().isUnauthorized());
+        login().andExpect(status().isUnauthorized());
+
+        // Act & Assert
+        login().andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+    }
+
+    private ResultActions login() throws Exception {
+        return mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"username\":\"nobody\",\"password\":\"wrong-password\"}"));
+    }
+}
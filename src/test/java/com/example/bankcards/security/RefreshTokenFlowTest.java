@@ -0,0 +1,157 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.dto.AuthRequest;
+import com.example.bankcards.dto.AuthResponse;
+import com.example.bankcards.dto.CardCreateDto;
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.UserDto;
+import com.example.bankcards.dto.UserRegistrationDto;
+import com.example.bankcards.service.AuthService;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Refresh-токены и выход на H2: обмен заменяет токен, повторное предъявление замененного отзывает цепочку,
+ * а отозванный при выходе access-токен отклоняется без запросов к базе и виден другому экземпляру после синхронизации.
+ * Статистика Hibernate общая для всех потоков, поэтому фоновое проведение переводов выключено.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "transfer.settlement.enabled=false"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class RefreshTokenFlowTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private UserDto user;
+    private CardDto card;
+    private AuthResponse login;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        String username = "refresh-" + System.nanoTime();
+        user = userService.registerUser(new UserRegistrationDto(
+                username, username + "@example.com", "password123", "Test", "User"));
+        card = cardService.createCard(CardCreateDto.builder()
+                .cardHolder("REFRESH USER")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .initialBalance(new BigDecimal("10.00"))
+                .ownerId(user.getId())
+                .build());
+        login = authService.authenticate(new AuthRequest(username, "password123"));
+    }
+
+    @Test
+    void refresh_RotatesToken_ReuseRevokesFamily() throws Exception {
+        // Act
+        AuthResponse rotated = read(refresh(login.getRefreshToken()).andExpect(status().isOk()));
+
+        // Assert
+        assertNotEquals(login.getRefreshToken(), rotated.getRefreshToken());
+        getBalance(rotated.getToken()).andExpect(status().isOk());
+        // Повторное предъявление замененного токена отзывает и выданный взамен
+        refresh(login.getRefreshToken()).andExpect(status().isUnauthorized());
+        refresh(rotated.getRefreshToken()).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void refresh_AfterUserDisabled_IsRejected() throws Exception {
+        // Arrange
+        userService.toggleUserStatus(user.getId());
+
+        // Act & Assert
+        refresh(login.getRefreshToken()).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void logout_RevokesAccessTokenWithoutStatements() throws Exception {
+        // Act
+        mockMvc.perform(post("/api/auth/logout")
+                        .header("Authorization", "Bearer " + login.getToken())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("refreshToken", login.getRefreshToken()))))
+                .andExpect(status().isNoContent());
+
+        // Assert
+        statistics.clear();
+        getBalance(login.getToken()).andExpect(status().isUnauthorized());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        refresh(login.getRefreshToken()).andExpect(status().isUnauthorized());
+
+        // Другой экземпляр приложения узнает об отзыве из таблицы при старте
+        RevokedAccessTokens otherInstance = new RevokedAccessTokens(jdbcTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(otherInstance, "expectedTokens", 1000L);
+        ReflectionTestUtils.setField(otherInstance, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(otherInstance, "syncOverlap", Duration.ofMinutes(1));
+        otherInstance.init();
+        String tokenId = jwtUtil.parseToken(login.getToken()).map(JwtUtil::tokenId).orElseThrow();
+        assertTrue(otherInstance.isRevoked(tokenId));
+    }
+
+    private ResultActions refresh(String refreshToken) throws Exception {
+        return mockMvc.perform(post("/api/auth/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("refreshToken", refreshToken))));
+    }
+
+    private ResultActions getBalance(String token) throws Exception {
+        return mockMvc.perform(get("/api/cards/" + card.getId() + "/balance")
+                .header("Authorization", "Bearer " + token));
+    }
+
+    private AuthResponse read(ResultActions result) throws Exception {
+        return objectMapper.readValue(result.andReturn().getResponse().getContentAsString(), AuthResponse.class);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.bankcards.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RevokedAccessTokensTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private RevokedAccessTokens revokedAccessTokens;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        revokedAccessTokens = new RevokedAccessTokens(jdbcTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(revokedAccessTokens, "expectedTokens", 100L);
+        ReflectionTestUtils.setField(revokedAccessTokens, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(revokedAccessTokens, "syncOverlap", Duration.ofMinutes(1));
+        revokedAccessTokens.init();
+    }
+
+    @Test
+    void revoke_TokenIsRevoked_CheckDoesNotQueryDatabase() {
+        // Arrange
+        String tokenId = UUID.randomUUID().toString();
+
+        // Act
+        revokedAccessTokens.revoke(tokenId, LocalDateTime.now().plusMinutes(15));
+
+        // Assert
+        assertTrue(revokedAccessTokens.isRevoked(tokenId));
+        assertFalse(revokedAccessTokens.isRevoked(UUID.randomUUID().toString()));
+        verify(jdbcTemplate, times(1)).update(startsWith("INSERT"), any(), any(), any());
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class), any(), any());
+    }
+
+    @Test
+    void revoke_BeyondExpectedTokens_GrowsFilterWithoutFalseNegatives() {
+        // Arrange
+        List<String> tokenIds = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            tokenIds.add(UUID.randomUUID().toString());
+        }
+
+        // Act
+        tokenIds.forEach(tokenId -> revokedAccessTokens.revoke(tokenId, LocalDateTime.now().plusMinutes(15)));
+
+        // Assert
+        assertTrue(tokenIds.stream().allMatch(revokedAccessTokens::isRevoked));
+    }
+
+    @Test
+    void sync_ExpiredToken_IsForgotten() {
+        // Arrange
+        String tokenId = UUID.randomUUID().toString();
+        revokedAccessTokens.revoke(tokenId, LocalDateTime.now().minusSeconds(1));
+
+        // Act
+        revokedAccessTokens.sync();
+
+        // Assert
+        assertFalse(revokedAccessTokens.isRevoked(tokenId));
+    }
+
+    @Test
+    void bloomFilter_NoFalseNegatives_FalsePositiveRateNearConfigured() {
+        // Arrange
+        RevocationBloomFilter filter = new RevocationBloomFilter(10_000, 0.01);
+        List<String> added = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            String tokenId = UUID.randomUUID().toString();
+            added.add(tokenId);
+            filter.put(tokenId);
+        }
+
+        // Act
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+
+        // Assert
+        assertTrue(added.stream().allMatch(filter::mightContain));
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+        assertEquals(7, filter.hashCount());
+    }
+}
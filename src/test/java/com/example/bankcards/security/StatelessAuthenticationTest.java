@@ -0,0 +1,123 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.dto.AuthRequest;
+import com.example.bankcards.dto.CardCreateDto;
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.UserDto;
+import com.example.bankcards.dto.UserRegistrationDto;
+import com.example.bankcards.service.AuthService;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Аутентификация без состояния на H2: запросы с токеном не читают пользователя из базы,
+ * а блокировка и смена ролей сразу отзывают выданные токены.
+ * Статистика Hibernate общая для всех потоков, поэтому фоновое проведение переводов выключено.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "transfer.settlement.enabled=false"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class StatelessAuthenticationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private UserDto user;
+    private CardDto card;
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        String username = "stateless-" + System.nanoTime();
+        user = userService.registerUser(new UserRegistrationDto(
+                username, username + "@example.com", "password123", "Test", "User"));
+        card = cardService.createCard(CardCreateDto.builder()
+                .cardHolder("STATELESS USER")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .initialBalance(new BigDecimal("25.00"))
+                .ownerId(user.getId())
+                .build());
+        token = authService.authenticate(new AuthRequest(username, "password123")).getToken();
+    }
+
+    @Test
+    void authenticatedRead_WarmCaches_RunsNoStatements() throws Exception {
+        // Arrange: первый запрос загружает версию безопасности и карту в кэши
+        getBalance().andExpect(status().isOk());
+        statistics.clear();
+
+        // Act
+        getBalance().andExpect(status().isOk()).andExpect(content().string("25.00"));
+
+        // Assert
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void toggleUserStatus_RevokesIssuedToken() throws Exception {
+        // Arrange
+        getBalance().andExpect(status().isOk());
+
+        // Act
+        userService.toggleUserStatus(user.getId());
+
+        // Assert
+        getBalance().andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void removeRole_RevokesIssuedToken() throws Exception {
+        // Arrange
+        userService.assignRoleToUser(user.getId(), "ROLE_ADMIN");
+        getBalance().andExpect(status().isUnauthorized());
+        String adminToken = authService.authenticate(new AuthRequest(user.getUsername(), "password123")).getToken();
+
+        // Act
+        userService.removeRoleFromUser(user.getId(), "ROLE_ADMIN");
+
+        // Assert
+        mockMvc.perform(get("/api/cards").header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private ResultActions getBalance() throws Exception {
+        return mockMvc.perform(get("/api/cards/" + card.getId() + "/balance")
+                .header("Authorization", "Bearer " + token));
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.AuthRequest;
+import com.example.bankcards.dto.AuthResponse;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.ServiceBusyException;
+import com.example.bankcards.security.AuthenticatedUser;
+import com.example.bankcards.security.JwtUtil;
+import com.example.bankcards.security.PasswordHasher;
+import com.example.bankcards.security.RevokedAccessTokens;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuthServiceTest {
+
+    @Mock
+    private JwtUtil jwtUtil;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private PasswordHasher passwordHasher;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Mock
+    private RevokedAccessTokens revokedAccessTokens;
+
+    @InjectMocks
+    private AuthService authService;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        Role role = new Role();
+        role.setName(Role.RoleName.ROLE_USER);
+        testUser = User.builder()
+                .id(1L)
+                .username("testuser")
+                .email("test@example.com")
+                .password("$2a$10$hash")
+                .enabled(true)
+                .securityVersion(2L)
+                .roles(new HashSet<>(Set.of(role)))
+                .build();
+        lenient().when(jwtUtil.getAccessTokenTtl()).thenReturn(Duration.ofMinutes(15));
+    }
+
+    @Test
+    void authenticate_Success_LoadsUserOnce() {
+        // Arrange
+        when(userService.findUserByUsername("testuser")).thenReturn(Optional.of(testUser));
+        when(passwordHasher.matches("password123", "$2a$10$hash")).thenReturn(true);
+        when(passwordHasher.upgradeEncoding("$2a$10$hash")).thenReturn(false);
+        when(jwtUtil.generateToken(any(UserDetails.class), eq(1L), eq(2L))).thenReturn("jwt");
+        when(refreshTokenService.issue(1L, 2L)).thenReturn("refresh");
+
+        // Act
+        AuthResponse response = authService.authenticate(new AuthRequest("testuser", "password123"));
+
+        // Assert
+        assertEquals("jwt", response.getToken());
+        assertEquals("refresh", response.getRefreshToken());
+        assertEquals(900L, response.getExpiresIn());
+        assertEquals(1L, response.getId());
+        assertEquals(Set.of("ROLE_USER"), response.getRoles());
+        verify(userService, times(1)).findUserByUsername("testuser");
+        verifyNoMoreInteractions(userService);
+    }
+
+    @Test
+    void authenticate_LowerCostHash_RehashesPassword() {
+        // Arrange
+        when(userService.findUserByUsername("testuser")).thenReturn(Optional.of(testUser));
+        when(passwordHasher.matches("password123", "$2a$10$hash")).thenReturn(true);
+        when(passwordHasher.upgradeEncoding("$2a$10$hash")).thenReturn(true);
+        when(passwordHasher.encode("password123")).thenReturn("$2a$12$hash");
+        when(userService.updatePasswordHash(1L, "$2a$10$hash", "$2a$12$hash")).thenReturn(true);
+
+        // Act
+        authService.authenticate(new AuthRequest("testuser", "password123"));
+
+        // Assert: хэш заменяется, только если в базе все еще проверенный
+        verify(userService).updatePasswordHash(1L, "$2a$10$hash", "$2a$12$hash");
+    }
+
+    @Test
+    void authenticate_RehashRejected_StillSignsIn() {
+        // Arrange
+        when(userService.findUserByUsername("testuser")).thenReturn(Optional.of(testUser));
+        when(passwordHasher.matches("password123", "$2a$10$hash")).thenReturn(true);
+        when(passwordHasher.upgradeEncoding("$2a$10$hash")).thenReturn(true);
+        when(passwordHasher.encode("password123")).thenThrow(new ServiceBusyException("busy"));
+        when(jwtUtil.generateToken(any(UserDetails.class), eq(1L), eq(2L))).thenReturn("jwt");
+
+        // Act
+        AuthResponse response = authService.authenticate(new AuthRequest("testuser", "password123"));
+
+        // Assert
+        assertEquals("jwt", response.getToken());
+        verify(userService, never()).updatePasswordHash(anyLong(), anyString(), anyString());
+    }
+
+    @Test
+    void authenticate_UnknownUser_ChecksDummyHashAndThrows() {
+        // Arrange
+        when(userService.findUserByUsername("ghost")).thenReturn(Optional.empty());
+        when(passwordHasher.matches("password123", null)).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(BadCredentialsException.class,
+                () -> authService.authenticate(new AuthRequest("ghost", "password123")));
+        verify(passwordHasher).matches("password123", null);
+    }
+
+    @Test
+    void authenticate_DisabledUser_ThrowsException() {
+        // Arrange
+        testUser.setEnabled(false);
+        when(userService.findUserByUsername("testuser")).thenReturn(Optional.of(testUser));
+        when(passwordHasher.matches("password123", "$2a$10$hash")).thenReturn(true);
+
+        // Act & Assert
+        assertThrows(DisabledException.class,
+                () -> authService.authenticate(new AuthRequest("testuser", "password123")));
+        verifyNoInteractions(jwtUtil);
+    }
+
+    @Test
+    void refresh_RotatesTokenWithoutPasswordCheck() {
+        // Arrange
+        when(refreshTokenService.rotate("refresh")).thenReturn(new RefreshTokenService.Rotation(1L, 2L, "next"));
+        when(userService.getUserById(1L)).thenReturn(testUser);
+        when(jwtUtil.generateToken(any(UserDetails.class), eq(1L), eq(2L))).thenReturn("jwt");
+
+        // Act
+        AuthResponse response = authService.refresh("refresh");
+
+        // Assert
+        assertEquals("jwt", response.getToken());
+        assertEquals("next", response.getRefreshToken());
+        verifyNoInteractions(passwordHasher);
+    }
+
+    @Test
+    void refresh_SecurityVersionChanged_ThrowsException() {
+        // Arrange
+        when(refreshTokenService.rotate("refresh")).thenReturn(new RefreshTokenService.Rotation(1L, 1L, "next"));
+        when(userService.getUserById(1L)).thenReturn(testUser);
+
+        // Act & Assert
+        assertThrows(BadCredentialsException.class, () -> authService.refresh("refresh"));
+        verify(jwtUtil, never()).generateToken(any(UserDetails.class), anyLong(), anyLong());
+    }
+
+    @Test
+    void logout_RevokesAccessAndRefreshTokens() {
+        // Arrange
+        LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(15);
+        AuthenticatedUser principal = new AuthenticatedUser(1L, "testuser", List.of(), "jti", expiresAt);
+
+        // Act
+        authService.logout(principal, "refresh");
+
+        // Assert
+        verify(revokedAccessTokens).revoke("jti", expiresAt);
+        verify(refreshTokenService).revoke("refresh");
+    }
+}
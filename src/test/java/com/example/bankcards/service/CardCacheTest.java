@@ -0,0 +1,123 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardCreateDto;
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Кэш карт на H2: повторные чтения не идут в базу, изменения карт и переводы удаляют записи после коммита.
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+class CardCacheTest {
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private User owner;
+    private CardDto source;
+    private CardDto destination;
+
+    @BeforeEach
+    void setUp() {
+        String username = "cache-" + System.nanoTime();
+        owner = userRepository.save(User.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .password("password")
+                .enabled(true)
+                .build());
+        source = createCard(new BigDecimal("100.00"));
+        destination = createCard(BigDecimal.ZERO);
+    }
+
+    @Test
+    void getCardById_SecondReadHitsCache_BlockEvictsAfterCommit() {
+        // Arrange
+        double hits = hits("cards.by-id");
+
+        // Act
+        cardService.getCardById(source.getId());
+        cardService.getCardById(source.getId());
+        cardService.blockCard(source.getId());
+
+        // Assert
+        assertEquals(hits + 1, hits("cards.by-id"));
+        assertEquals(Card.CardStatus.BLOCKED, cardService.getCardById(source.getId()).getStatus());
+    }
+
+    @Test
+    void getCardBalance_TransferEvictsBothCards() {
+        // Arrange
+        assertEquals(0, new BigDecimal("100.00").compareTo(cardService.getCardBalance(source.getId(), owner.getId())));
+        assertEquals(0, BigDecimal.ZERO.compareTo(cardService.getCardBalance(destination.getId(), owner.getId())));
+
+        // Act
+        transferService.transferBetweenOwnCards(TransferDto.builder()
+                .fromCardId(source.getId())
+                .toCardId(destination.getId())
+                .amount(new BigDecimal("30.00"))
+                .build(), owner.getId());
+
+        // Assert
+        assertEquals(0, new BigDecimal("70.00").compareTo(cardService.getCardBalance(source.getId(), owner.getId())));
+        assertEquals(0, new BigDecimal("30.00").compareTo(cardService.getCardBalance(destination.getId(), owner.getId())));
+    }
+
+    @Test
+    void getUserCards_CreateAndDeleteEvictOwnerList() {
+        // Arrange
+        PageRequest page = PageRequest.of(0, 10);
+        assertEquals(2, cardService.getUserCards(owner.getId(), page).getTotalElements());
+
+        // Act
+        CardDto created = createCard(BigDecimal.ZERO);
+        Page<CardDto> afterCreate = cardService.getUserCards(owner.getId(), page);
+        cardService.deleteCard(destination.getId());
+        Page<CardDto> afterDelete = cardService.getUserCards(owner.getId(), page);
+
+        // Assert
+        assertEquals(3, afterCreate.getTotalElements());
+        assertEquals(created.getId(), afterCreate.getContent().get(2).getId());
+        assertEquals(2, afterDelete.getTotalElements());
+        assertTrue(afterDelete.getContent().stream().noneMatch(card -> card.getId().equals(destination.getId())));
+    }
+
+    private CardDto createCard(BigDecimal balance) {
+        return cardService.createCard(CardCreateDto.builder()
+                .cardHolder("Cache User")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .initialBalance(balance)
+                .ownerId(owner.getId())
+                .build());
+    }
+
+    private double hits(String cache) {
+        return meterRegistry.get("cache.gets").tag("cache", cache).tag("result", "hit").functionCounter().count();
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Перевод просроченных карт в EXPIRED частями на H2, сброс их из кэша и вычисление статуса при чтении до обновления.
+ */
+@SpringBootTest(properties = {
+        "card.expiry-sweep.batch-size=2",
+        "card.expiry-sweep.interval=PT1H"
+})
+@ActiveProfiles("h2")
+class CardExpirySweeperTest {
+
+    @Autowired
+    private CardExpirySweeper cardExpirySweeper;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @SpyBean
+    private CardCache cardCache;
+
+    @Test
+    void sweep_ExpiresActiveCardsInChunks() {
+        // Arrange: пять просроченных активных карт (больше пачки), просроченная заблокированная и действующая
+        String username = "expiry-" + System.nanoTime();
+        User owner = userRepository.save(User.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .password("password")
+                .enabled(true)
+                .build());
+        List<Card> cards = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            cards.add(card(owner, username + "-" + i, LocalDate.now().minusDays(i + 1), Card.CardStatus.ACTIVE));
+        }
+        Card blocked = card(owner, username + "-blocked", LocalDate.now().minusDays(1), Card.CardStatus.BLOCKED);
+        Card valid = card(owner, username + "-valid", LocalDate.now(), Card.CardStatus.ACTIVE);
+        cards.add(blocked);
+        cards.add(valid);
+        cardRepository.saveAll(cards);
+        PageRequest page = PageRequest.of(0, 10);
+
+        // До обновления чтение показывает вычисленный статус и ничего не пишет
+        assertEquals(5, cardService.getUserCardsByStatus(owner.getId(), Card.CardStatus.EXPIRED, page).getTotalElements());
+        assertEquals(List.of(valid.getId()), ids(cardService.getUserCardsByStatus(owner.getId(), Card.CardStatus.ACTIVE, page).getContent()));
+        assertEquals(Card.CardStatus.EXPIRED, cardService.getCardById(cards.get(0).getId()).getStatus());
+        assertEquals(Card.CardStatus.ACTIVE, cardRepository.findById(cards.get(0).getId()).orElseThrow().getStatus());
+
+        // Act
+        cardExpirySweeper.sweep();
+
+        // Assert
+        List<Card> stored = cardRepository.findByOwnerId(owner.getId());
+        assertEquals(5, stored.stream().filter(card -> card.getStatus() == Card.CardStatus.EXPIRED).count());
+        assertEquals(Card.CardStatus.BLOCKED, cardRepository.findById(blocked.getId()).orElseThrow().getStatus());
+        assertEquals(Card.CardStatus.ACTIVE, cardRepository.findById(valid.getId()).orElseThrow().getStatus());
+        assertEquals(5, cardService.getUserCardsByStatus(owner.getId(), Card.CardStatus.EXPIRED, page).getTotalElements());
+        assertEquals(1, cardService.getUserCardsByStatus(owner.getId(), Card.CardStatus.BLOCKED, page).getTotalElements());
+
+        // Обновленные карты сброшены из кэша пачками, остальные не затронуты
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Long>> evicted = ArgumentCaptor.forClass(Collection.class);
+        verify(cardCache, atLeastOnce()).evictCardsAfterCommit(evicted.capture());
+        List<Long> evictedIds = evicted.getAllValues().stream().flatMap(Collection::stream).toList();
+        assertTrue(evictedIds.containsAll(cardIds(cards.subList(0, 5))));
+        assertFalse(evictedIds.contains(blocked.getId()));
+        assertFalse(evictedIds.contains(valid.getId()));
+    }
+
+    private static Card card(User owner, String number, LocalDate expiryDate, Card.CardStatus status) {
+        return Card.builder()
+                .cardNumber("expiry-" + number)
+                .panLast4("0000")
+                .cardHolder("EXPIRY USER")
+                .expiryDate(expiryDate)
+                .cvv("000")
+                .status(status)
+                .balance(BigDecimal.ZERO)
+                .owner(owner)
+                .build();
+    }
+
+    private static List<Long> ids(List<CardDto> cards) {
+        return cards.stream().map(CardDto::getId).toList();
+    }
+
+    private static List<Long> cardIds(List<Card> cards) {
+        return cards.stream().map(Card::getId).toList();
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardCreateDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.exception.ResourceNotFoundException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.CardFingerprintUtil;
+import com.example.bankcards.util.CardNumberGenerator;
+import com.example.bankcards.util.EncryptionUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doCallRealMethod;
+
+/**
+ * Массовый выпуск карт на H2: несколько частей, разные владельцы, потоковый NDJSON-ответ с итоговой строкой.
+ * Части уменьшены до 500 карт, чтобы проверить выпуск несколькими транзакциями на небольшом запросе.
+ */
+@SpringBootTest(properties = "card.bulk.chunk-size=500")
+@ActiveProfiles("h2")
+class CardIssuanceServiceTest {
+
+    @SpyBean
+    private CardService cardService;
+
+    @Autowired
+    private CardIssuanceService cardIssuanceService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+
+    @Autowired
+    private CardFingerprintUtil cardFingerprintUtil;
+
+    @Autowired
+    private CardNumberGenerator cardNumberGenerator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void issueCards_SeveralChunks_StreamsEveryCreatedCard() throws IOException {
+        // Arrange: больше карт, чем в одной части (500)
+        User first = saveUser("bulk-a-" + System.nanoTime());
+        User second = saveUser("bulk-b-" + System.nanoTime());
+        List<CardCreateDto> request = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            request.add(CardCreateDto.builder()
+                    .cardHolder("Bulk Holder " + i)
+                    .expiryDate(LocalDate.now().plusYears(3))
+                    .initialBalance(BigDecimal.TEN)
+                    .ownerId(i % 3 == 0 ? second.getId() : first.getId())
+                    .build());
+        }
+
+        // Act
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cardIssuanceService.issueCards(request).writeTo(out);
+
+        // Assert
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(request.size() + 1, lines.size());
+        JsonNode summary = objectMapper.readTree(lines.get(request.size()));
+        assertTrue(summary.get("complete").asBoolean());
+        assertEquals(request.size(), summary.get("issued").asInt());
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < request.size(); i++) {
+            JsonNode card = objectMapper.readTree(lines.get(i));
+            ids.add(card.get("id").asLong());
+            assertEquals(request.get(i).getOwnerId(), card.get("ownerId").asLong());
+            assertEquals("BULK HOLDER " + i, card.get("cardHolder").asText());
+            assertTrue(card.get("maskedCardNumber").asText().startsWith("**** **** **** "));
+        }
+        assertEquals(request.size(), ids.size());
+        assertEquals(800, cardRepository.findByOwnerId(first.getId()).size());
+
+        Card stored = cardRepository.findByOwnerId(second.getId()).get(0);
+        String cardNumber = encryptionUtil.decrypt(stored.getCardNumber());
+        assertTrue(cardNumberGenerator.isValidCardNumber(cardNumber));
+        assertEquals(cardFingerprintUtil.fingerprint(cardNumber), stored.getCardNumberFingerprint());
+        assertEquals(cardNumber.substring(12), stored.getPanLast4());
+    }
+
+    @Test
+    void issueCards_ChunkFails_EndsWithSummaryOfCommittedCards() throws IOException {
+        // Arrange: вторая часть завершается ошибкой
+        User owner = saveUser("bulk-d-" + System.nanoTime());
+        List<CardCreateDto> request = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            request.add(CardCreateDto.builder()
+                    .cardHolder("Partial " + i)
+                    .expiryDate(LocalDate.now().plusYears(3))
+                    .ownerId(owner.getId())
+                    .build());
+        }
+        doCallRealMethod()
+                .doThrow(new BusinessException("Unable to generate unique card numbers"))
+                .when(cardService).createCards(anyList(), anyMap());
+
+        // Act
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cardIssuanceService.issueCards(request).writeTo(out);
+
+        // Assert
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(501, lines.size());
+        JsonNode summary = objectMapper.readTree(lines.get(500));
+        assertFalse(summary.get("complete").asBoolean());
+        assertEquals(1200, summary.get("requested").asInt());
+        assertEquals(500, summary.get("issued").asInt());
+        assertEquals("Unable to generate unique card numbers", summary.get("error").asText());
+        assertEquals(500, cardRepository.findByOwnerId(owner.getId()).size());
+    }
+
+    @Test
+    void issueCards_UnknownOwner_ThrowsBeforeIssuing() {
+        // Arrange
+        User owner = saveUser("bulk-c-" + System.nanoTime());
+        List<CardCreateDto> request = List.of(
+                CardCreateDto.builder().cardHolder("Known").expiryDate(LocalDate.now().plusYears(3)).ownerId(owner.getId()).build(),
+                CardCreateDto.builder().cardHolder("Unknown").expiryDate(LocalDate.now().plusYears(3)).ownerId(-1L).build());
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> cardIssuanceService.issueCards(request));
+        assertTrue(cardRepository.findByOwnerId(owner.getId()).isEmpty());
+    }
+
+    private User saveUser(String username) {
+        return userRepository.save(User.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .password("password")
+                .enabled(true)
+                .build());
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Число SQL-запросов на списки карт на H2: владелец читается тем же запросом, что и карты,
+ * поэтому число запросов не зависит ни от числа карт на странице, ни от числа разных владельцев.
+ * Статистика Hibernate общая для всех потоков, поэтому фоновое проведение переводов выключено.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "transfer.settlement.enabled=false"
+})
+@ActiveProfiles("h2")
+class CardListingQueryCountTest {
+
+    private static final int OWNERS = 4;
+    private static final int CARDS_PER_OWNER = 3;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        String suffix = Long.toString(System.nanoTime());
+        for (int i = 0; i < OWNERS; i++) {
+            owner = userRepository.save(User.builder()
+                    .username("listing-" + i + "-" + suffix)
+                    .email("listing-" + i + "-" + suffix + "@example.com")
+                    .password("password")
+                    .enabled(true)
+                    .build());
+            for (int j = 0; j < CARDS_PER_OWNER; j++) {
+                saveCard(owner, suffix + "-" + i + "-" + j, j == 0 ? Card.CardStatus.BLOCKED : Card.CardStatus.ACTIVE);
+            }
+        }
+    }
+
+    @Test
+    void getAllCards_ManyOwners_SelectAndCount() {
+        // Act
+        Page<CardDto> page = countStatements(2, () -> cardService.getAllCards(PageRequest.of(0, OWNERS * CARDS_PER_OWNER)));
+
+        // Assert
+        assertEquals(OWNERS * CARDS_PER_OWNER, page.getContent().size());
+        assertTrue(page.getContent().stream().allMatch(card -> card.getOwnerUsername() != null));
+    }
+
+    @Test
+    void getUserCards_Sorted_SelectAndCount() {
+        // Act
+        Page<CardDto> page = countStatements(2,
+                () -> cardService.getUserCards(owner.getId(), PageRequest.of(0, 2, Sort.by("id"))));
+
+        // Assert
+        assertEquals(CARDS_PER_OWNER, page.getTotalElements());
+        assertEquals(owner.getUsername(), page.getContent().get(0).getOwnerUsername());
+    }
+
+    @Test
+    void getUserCards_Cached_IdsAndCardsOnMissNothingOnHit() {
+        // Arrange
+        PageRequest pageRequest = PageRequest.of(0, 10);
+
+        // Act
+        Page<CardDto> cold = countStatements(2, () -> cardService.getUserCards(owner.getId(), pageRequest));
+        Page<CardDto> warm = countStatements(0, () -> cardService.getUserCards(owner.getId(), pageRequest));
+
+        // Assert
+        assertEquals(CARDS_PER_OWNER, cold.getContent().size());
+        assertEquals(cold.getContent(), warm.getContent());
+    }
+
+    @Test
+    void getUserCards_List_SingleSelect() {
+        // Act
+        List<CardDto> cards = countStatements(1, () -> cardService.getUserCards(owner.getId()));
+
+        // Assert
+        assertEquals(CARDS_PER_OWNER, cards.size());
+    }
+
+    @Test
+    void getUserCardsByStatus_SelectAndCount() {
+        // Act
+        Page<CardDto> active = countStatements(2,
+                () -> cardService.getUserCardsByStatus(owner.getId(), Card.CardStatus.ACTIVE, PageRequest.of(0, 1)));
+        Page<CardDto> expired = countStatements(2,
+                () -> cardService.getUserCardsByStatus(owner.getId(), Card.CardStatus.EXPIRED, PageRequest.of(1, 1)));
+
+        // Assert
+        assertEquals(CARDS_PER_OWNER - 1, active.getTotalElements());
+        assertEquals(0, expired.getTotalElements());
+    }
+
+    @Test
+    void getCardById_CacheMiss_SingleSelect() {
+        // Arrange
+        Long cardId = cardRepository.findIdsByOwnerId(owner.getId()).get(0);
+
+        // Act
+        CardDto card = countStatements(1, () -> cardService.getCardById(cardId));
+
+        // Assert
+        assertEquals(owner.getUsername(), card.getOwnerUsername());
+    }
+
+    private <T> T countStatements(long expected, Supplier<T> listing) {
+        statistics.clear();
+        T result = listing.get();
+        assertEquals(expected, statistics.getPrepareStatementCount());
+        return result;
+    }
+
+    private void saveCard(User owner, String number, Card.CardStatus status) {
+        cardRepository.save(Card.builder()
+                .cardNumber("listing-" + number)
+                .panLast4("0000")
+                .cardHolder("LISTING USER")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .cvv("000")
+                .status(status)
+                .balance(BigDecimal.ZERO)
+                .owner(owner)
+                .build());
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.CardFingerprintUtil;
+import com.example.bankcards.util.EncryptionUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Заполнение отпечатков и последних цифр у карт, сохраненных без них, и поиск по номеру после заполнения (H2).
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+class CardNumberBackfillTest {
+
+    @Autowired
+    private CardNumberBackfill cardNumberBackfill;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+
+    @Autowired
+    private CardFingerprintUtil cardFingerprintUtil;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void backfill_FillsMissingColumnsInBatches() {
+        // Arrange: карт больше, чем пачка (500), как у карт, выпущенных до появления столбца
+        String suffix = Long.toString(System.nanoTime());
+        User owner = userRepository.save(User.builder()
+                .username("backfill-" + suffix)
+                .email("backfill-" + suffix + "@example.com")
+                .password("password")
+                .enabled(true)
+                .build());
+        List<Card> cards = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            cards.add(Card.builder()
+                    .cardNumber(encryptionUtil.encrypt(String.format("4%06d%09d", suffix.hashCode() & 0xFFFFF, i)))
+                    .cardHolder("BACKFILL USER")
+                    .expiryDate(LocalDate.now().plusYears(3))
+                    .cvv("000")
+                    .status(Card.CardStatus.ACTIVE)
+                    .balance(BigDecimal.ZERO)
+                    .owner(owner)
+                    .build());
+        }
+        // Поврежденный номер пропускается и не останавливает заполнение
+        cards.add(5, Card.builder()
+                .cardNumber("not-encrypted-" + suffix)
+                .cardHolder("BACKFILL USER")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .cvv("000")
+                .status(Card.CardStatus.ACTIVE)
+                .balance(BigDecimal.ZERO)
+                .owner(owner)
+                .build());
+        cardRepository.saveAll(cards);
+        String lastNumber = encryptionUtil.decrypt(cards.get(cards.size() - 1).getCardNumber());
+
+        // Act
+        cardNumberBackfill.backfill();
+
+        // Assert
+        Integer missing = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM cards WHERE owner_id = ? AND (card_number_fingerprint IS NULL OR pan_last4 IS NULL)",
+                Integer.class, owner.getId());
+        assertEquals(1, missing);
+        Card last = cardRepository.findById(cards.get(cards.size() - 1).getId()).orElseThrow();
+        assertEquals(cardFingerprintUtil.fingerprint(lastNumber), last.getCardNumberFingerprint());
+        assertEquals(lastNumber.substring(12), last.getPanLast4());
+        String firstNumber = encryptionUtil.decrypt(cards.get(0).getCardNumber());
+        CardDto found = cardService.findCardByNumber(firstNumber);
+        assertEquals(cards.get(0).getId(), found.getId());
+        assertEquals("**** **** **** " + firstNumber.substring(12), found.getMaskedCardNumber());
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardCreateDto;
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.CardFingerprintUtil;
+import com.example.bankcards.util.EncryptionUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Пул номеров карт на H2: пополнение с резервами, выпуск карты из пула, переход на генерацию при исчерпании
+ * и очистка резервов выпущенных номеров.
+ */
+@SpringBootTest(properties = {
+        "card.number-pool.enabled=true",
+        "card.number-pool.capacity=20",
+        "card.number-pool.refill-batch-size=20",
+        "card.number-pool.refill-interval=PT1H",
+        "card.number-pool.cleanup-interval=PT1H"
+})
+@ActiveProfiles("h2")
+class CardNumberPoolTest {
+
+    @Autowired
+    private CardNumberPool cardNumberPool;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+
+    @Autowired
+    private CardFingerprintUtil cardFingerprintUtil;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void createCard_TakesPooledNumbersThenFallsBackToGeneration() {
+        // Arrange
+        String username = "pool-" + System.nanoTime();
+        User owner = userRepository.save(User.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .password("password")
+                .enabled(true)
+                .build());
+        CardCreateDto createDto = CardCreateDto.builder()
+                .cardHolder("Pool User")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .initialBalance(BigDecimal.ZERO)
+                .ownerId(owner.getId())
+                .build();
+        cardNumberPool.refill();
+        assertEquals(20, depth());
+        assertEquals(20, reservations());
+        double misses = meterRegistry.get("card.number.pool.misses").counter().count();
+
+        // Act: пул на 20 номеров, выпускаем 21 карту
+        for (int i = 0; i < 21; i++) {
+            CardDto created = cardService.createCard(createDto);
+            Card card = cardRepository.findById(created.getId()).orElseThrow();
+            String cardNumber = encryptionUtil.decrypt(card.getCardNumber());
+            assertEquals(cardFingerprintUtil.fingerprint(cardNumber), card.getCardNumberFingerprint());
+            assertEquals("**** **** **** " + cardNumber.substring(12), created.getMaskedCardNumber());
+            assertEquals(3, encryptionUtil.decrypt(card.getCvv()).length());
+        }
+
+        // Assert
+        assertEquals(0, depth());
+        assertEquals(misses + 1, meterRegistry.get("card.number.pool.misses").counter().count());
+        assertEquals(21, cardRepository.findByOwnerId(owner.getId()).size());
+        cardNumberPool.cleanup();
+        assertEquals(0, reservations());
+    }
+
+    private double depth() {
+        return meterRegistry.get("card.number.pool.depth").gauge().value();
+    }
+
+    private Integer reservations() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM card_number_reservations", Integer.class);
+    }
+}
@@ -2,29 +2,37 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.dto.CardCreateDto;
 import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardView;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.BusinessException;
 import com.example.bankcards.exception.CardBlockedException;
 import com.example.bankcards.exception.ResourceNotFoundException;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.CardFingerprintUtil;
 import com.example.bankcards.util.CardMaskingUtil;
 import com.example.bankcards.util.CardNumberGenerator;
 import com.example.bankcards.util.EncryptionUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -42,12 +50,25 @@ class CardServiceTest {
     @Mock
     private EncryptionUtil encryptionUtil;
 
+    @Mock
+    private CardFingerprintUtil cardFingerprintUtil;
+
     @Mock
     private CardMaskingUtil cardMaskingUtil;
 
     @Mock
     private CardNumberGenerator cardNumberGenerator;
 
+    @Mock
+    private CardNumberPool cardNumberPool;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    // Кэш выключен: чтения идут в репозиторий, как без кэша
+    @Spy
+    private CardCache cardCache = new CardCache(new SimpleMeterRegistry());
+
     @InjectMocks
     private CardService cardService;
 
@@ -57,6 +78,8 @@ class CardServiceTest {
 
     @BeforeEach
     void setUp() {
+        cardService.init();
+
         testUser = User.builder()
                 .id(1L)
                 .username("testuser")
@@ -66,6 +89,7 @@ class CardServiceTest {
         testCard = Card.builder()
                 .id(1L)
                 .cardNumber("encrypted123")
+                .panLast4("7890")
                 .cardHolder("TEST USER")
                 .expiryDate(LocalDate.now().plusYears(3))
                 .cvv("encrypted456")
@@ -82,12 +106,94 @@ class CardServiceTest {
                 .build();
     }
 
+    @Test
+    void createCard_FingerprintCollision_RegeneratesNumber() {
+        // Arrange
+        when(userService.getUserById(1L)).thenReturn(testUser);
+        when(cardNumberGenerator.generateCardNumber()).thenReturn("4000001111111111", "4000002222222222");
+        when(cardNumberGenerator.generateCVV()).thenReturn("123");
+        when(cardFingerprintUtil.fingerprint("4000001111111111")).thenReturn("taken");
+        when(cardFingerprintUtil.fingerprint("4000002222222222")).thenReturn("free");
+        when(cardRepository.existsByCardNumberFingerprint("taken")).thenReturn(true);
+        when(cardRepository.existsByCardNumberFingerprint("free")).thenReturn(false);
+        when(encryptionUtil.encrypt(anyString())).thenAnswer(i -> "enc-" + i.getArgument(0));
+        when(cardRepository.save(any(Card.class))).thenAnswer(i -> i.getArgument(0));
+
+        // Act
+        cardService.createCard(cardCreateDto);
+
+        // Assert
+        verify(cardRepository).save(argThat(card ->
+                card.getCardNumberFingerprint().equals("free")
+                        && card.getPanLast4().equals("2222")
+                        && card.getCardNumber().equals("enc-4000002222222222")));
+        verify(encryptionUtil, never()).encrypt("4000001111111111");
+    }
+
+    @Test
+    void createCard_PooledNumber_SkipsGenerationAndEncryption() {
+        // Arrange
+        when(userService.getUserById(1L)).thenReturn(testUser);
+        when(cardNumberPool.take()).thenReturn(Optional.of(new CardNumberPool.PooledCardNumber(
+                "enc-4000005555555555", "pooled", "5555", "enc-cvv", LocalDateTime.now())));
+        when(cardRepository.save(any(Card.class))).thenAnswer(i -> i.getArgument(0));
+
+        // Act
+        cardService.createCard(cardCreateDto);
+
+        // Assert
+        verify(cardRepository).save(argThat(card ->
+                card.getCardNumberFingerprint().equals("pooled")
+                        && card.getPanLast4().equals("5555")
+                        && card.getCardNumber().equals("enc-4000005555555555")
+                        && card.getCvv().equals("enc-cvv")));
+        verifyNoInteractions(cardNumberGenerator, encryptionUtil);
+        verify(cardRepository, never()).existsByCardNumberFingerprint(anyString());
+    }
+
+    @Test
+    void createCards_Collisions_RegeneratesOnlyCollidingNumbers() {
+        // Arrange: второй номер уже выпущен, третий совпадает с первым внутри пачки
+        List<CardCreateDto> createDtos = List.of(cardCreateDto, cardCreateDto, cardCreateDto);
+        when(cardNumberGenerator.generateCardNumber())
+                .thenReturn("4000001111111111", "4000002222222222", "4000001111111111", "4000003333333333", "4000004444444444");
+        when(cardNumberGenerator.generateCVV()).thenReturn("123");
+        when(cardFingerprintUtil.fingerprint(anyString())).thenAnswer(i -> "fp-" + i.getArgument(0));
+        when(cardRepository.findExistingFingerprints(anyCollection())).thenReturn(Set.of("fp-4000002222222222"), Set.of());
+        when(encryptionUtil.encryptAll(anyList())).thenAnswer(i -> i.<List<String>>getArgument(0).stream().map(v -> "enc-" + v).toList());
+        when(cardRepository.saveAll(anyList())).thenAnswer(i -> i.getArgument(0));
+
+        // Act
+        List<CardDto> result = cardService.createCards(createDtos, Map.of(1L, testUser));
+
+        // Assert
+        assertEquals(3, result.size());
+        verify(cardRepository).findExistingFingerprints(List.of("fp-4000003333333333", "fp-4000004444444444"));
+        verify(cardRepository).saveAll(argThat((List<Card> cards) -> cards.stream().map(Card::getCardNumber).toList().equals(List.of(
+                "enc-4000001111111111", "enc-4000003333333333", "enc-4000004444444444"))));
+        verify(cardRepository, times(2)).findExistingFingerprints(anyCollection());
+    }
+
+    @Test
+    void findCardByNumber_LooksUpByFingerprint() {
+        // Arrange
+        when(cardFingerprintUtil.fingerprint("4000 0012 3456 7890")).thenReturn("fingerprint");
+        when(cardRepository.findByCardNumberFingerprint("fingerprint")).thenReturn(Optional.of(testCard));
+        when(cardMaskingUtil.maskLastFour("7890")).thenReturn("**** **** **** 7890");
+
+        // Act
+        CardDto result = cardService.findCardByNumber("4000 0012 3456 7890");
+
+        // Assert
+        assertEquals(testCard.getId(), result.getId());
+        assertEquals("**** **** **** 7890", result.getMaskedCardNumber());
+    }
+
     @Test
     void getCardById_Success() {
         // Arrange
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(testCard));
-        when(encryptionUtil.decrypt(anyString())).thenReturn("4000001234567890");
-        when(cardMaskingUtil.maskCardNumber(anyString())).thenReturn("**** **** **** 7890");
+        when(cardRepository.findViewById(1L)).thenReturn(Optional.of(CardView.of(testCard)));
+        when(cardMaskingUtil.maskLastFour("7890")).thenReturn("**** **** **** 7890");
 
         // Act
         CardDto result = cardService.getCardById(1L);
@@ -95,13 +201,28 @@ class CardServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals(testCard.getId(), result.getId());
-        verify(cardRepository, times(1)).findById(1L);
+        verify(cardRepository, times(1)).findViewById(1L);
+    }
+
+    @Test
+    void getCardById_ExpiredActiveCard_ReportsExpiredWithoutChangingCard() {
+        // Arrange
+        testCard.setExpiryDate(LocalDate.now().minusDays(1));
+        when(cardRepository.findViewById(1L)).thenReturn(Optional.of(CardView.of(testCard)));
+
+        // Act
+        CardDto result = cardService.getCardById(1L);
+
+        // Assert
+        assertEquals(Card.CardStatus.EXPIRED, result.getStatus());
+        assertEquals(Card.CardStatus.ACTIVE, testCard.getStatus());
+        verify(cardRepository, never()).save(any(Card.class));
     }
 
     @Test
     void getCardById_NotFound() {
         // Arrange
-        when(cardRepository.findById(999L)).thenReturn(Optional.empty());
+        when(cardRepository.findViewById(999L)).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(ResourceNotFoundException.class, () -> cardService.getCardById(999L));
@@ -111,11 +232,10 @@ class CardServiceTest {
     void getUserCards_Success() {
         // Arrange
         PageRequest pageRequest = PageRequest.of(0, 10);
-        Page<Card> cardPage = new PageImpl<>(List.of(testCard));
+        Page<CardView> cardPage = new PageImpl<>(List.of(CardView.of(testCard)));
 
-        when(cardRepository.findByOwnerId(1L, pageRequest)).thenReturn(cardPage);
-        when(encryptionUtil.decrypt(anyString())).thenReturn("4000001234567890");
-        when(cardMaskingUtil.maskCardNumber(anyString())).thenReturn("**** **** **** 7890");
+        when(cardRepository.findViewsByOwnerId(1L, pageRequest)).thenReturn(cardPage);
+        when(cardMaskingUtil.maskLastFour("7890")).thenReturn("**** **** **** 7890");
 
         // Act
         Page<CardDto> result = cardService.getUserCards(1L, pageRequest);
@@ -123,7 +243,36 @@ class CardServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals(1, result.getTotalElements());
-        verify(cardRepository, times(1)).findByOwnerId(1L, pageRequest);
+        verify(cardRepository, times(1)).findViewsByOwnerId(1L, pageRequest);
+        verifyNoInteractions(encryptionUtil);
+    }
+
+    @Test
+    void getUserCards_LegacyCardWithoutLastFour_DecryptsOnlyThatCard() {
+        // Arrange
+        PageRequest pageRequest = PageRequest.of(0, 10);
+        Card legacyCard = Card.builder()
+                .id(2L)
+                .cardNumber("encrypted789")
+                .cardHolder("TEST USER")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .status(Card.CardStatus.ACTIVE)
+                .balance(BigDecimal.ZERO)
+                .owner(testUser)
+                .build();
+
+        when(cardRepository.findViewsByOwnerId(1L, pageRequest))
+                .thenReturn(new PageImpl<>(List.of(CardView.of(testCard), CardView.of(legacyCard))));
+        when(encryptionUtil.decryptAll(List.of("encrypted789"))).thenReturn(List.of("4000009876543210"));
+        when(cardMaskingUtil.maskLastFour("7890")).thenReturn("**** **** **** 7890");
+        when(cardMaskingUtil.maskLastFour("3210")).thenReturn("**** **** **** 3210");
+
+        // Act
+        Page<CardDto> result = cardService.getUserCards(1L, pageRequest);
+
+        // Assert
+        assertEquals("**** **** **** 7890", result.getContent().get(0).getMaskedCardNumber());
+        assertEquals("**** **** **** 3210", result.getContent().get(1).getMaskedCardNumber());
     }
 
     @Test
@@ -131,8 +280,7 @@ class CardServiceTest {
         // Arrange
         when(cardRepository.findById(1L)).thenReturn(Optional.of(testCard));
         when(cardRepository.save(any(Card.class))).thenReturn(testCard);
-        when(encryptionUtil.decrypt(anyString())).thenReturn("4000001234567890");
-        when(cardMaskingUtil.maskCardNumber(anyString())).thenReturn("**** **** **** 7890");
+        when(cardMaskingUtil.maskLastFour("7890")).thenReturn("**** **** **** 7890");
 
         // Act
         CardDto result = cardService.blockCard(1L);
@@ -159,8 +307,7 @@ class CardServiceTest {
         testCard.setStatus(Card.CardStatus.BLOCKED);
         when(cardRepository.findById(1L)).thenReturn(Optional.of(testCard));
         when(cardRepository.save(any(Card.class))).thenReturn(testCard);
-        when(encryptionUtil.decrypt(anyString())).thenReturn("4000001234567890");
-        when(cardMaskingUtil.maskCardNumber(anyString())).thenReturn("**** **** **** 7890");
+        when(cardMaskingUtil.maskLastFour("7890")).thenReturn("**** **** **** 7890");
 
         // Act
         CardDto result = cardService.unblockCard(1L);
@@ -0,0 +1,256 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.entity.IdempotencyKey;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private IdempotencyService idempotencyService;
+
+    private TransferDto transferDto;
+    private Transaction transaction;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(idempotencyService, "cacheSize", 100);
+        ReflectionTestUtils.setField(idempotencyService, "ttl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(idempotencyService, "evictionBatchSize", 2);
+        idempotencyService.init();
+
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(i ->
+                ((TransactionCallback<?>) i.getArgument(0)).doInTransaction(null));
+
+        transferDto = TransferDto.builder()
+                .fromCardId(1L)
+                .toCardId(2L)
+                .amount(BigDecimal.valueOf(100))
+                .description("Test transfer")
+                .build();
+
+        transaction = Transaction.builder()
+                .id(10L)
+                .amount(BigDecimal.valueOf(100))
+                .status(Transaction.TransactionStatus.SUCCESS)
+                .build();
+    }
+
+    @Test
+    void execute_FirstRequest_RunsTransferAndStoresKey() {
+        // Arrange
+        when(idempotencyKeyRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.empty());
+
+        // Act
+        Transaction result = idempotencyService.execute(1L, "key-1", transferDto, () -> transaction);
+
+        // Assert
+        assertSame(transaction, result);
+        verify(idempotencyKeyRepository, times(1)).save(argThat(key ->
+                key.getTransactionId().equals(10L) && key.getExpiresAt() != null));
+    }
+
+    @Test
+    void execute_RepeatedKey_ReplaysStoredTransaction() {
+        // Arrange
+        when(idempotencyKeyRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.empty());
+        when(transactionRepository.findById(10L)).thenReturn(Optional.of(transaction));
+        AtomicInteger executions = new AtomicInteger();
+
+        // Act
+        idempotencyService.execute(1L, "key-1", transferDto, () -> {
+            executions.incrementAndGet();
+            return transaction;
+        });
+        Transaction replayed = idempotencyService.execute(1L, "key-1", transferDto, () -> {
+            executions.incrementAndGet();
+            return transaction;
+        });
+
+        // Assert
+        assertSame(transaction, replayed);
+        assertEquals(1, executions.get());
+        verify(idempotencyKeyRepository, times(1)).findByUserIdAndIdempotencyKey(1L, "key-1");
+    }
+
+    @Test
+    void execute_KeyStoredByAnotherNode_ReplaysWithoutTransfer() {
+        // Arrange
+        IdempotencyKey stored = IdempotencyKey.builder()
+                .userId(1L)
+                .idempotencyKey("key-1")
+                .requestHash(hashOf(transferDto))
+                .transactionId(10L)
+                .expiresAt(LocalDateTime.now().plusHours(1))
+                .build();
+        when(idempotencyKeyRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.of(stored));
+        when(transactionRepository.findById(10L)).thenReturn(Optional.of(transaction));
+
+        // Act
+        Transaction result = idempotencyService.execute(1L, "key-1", transferDto, () -> fail("Transfer must not run"));
+
+        // Assert
+        assertSame(transaction, result);
+        verify(transactionTemplate, never()).execute(any());
+    }
+
+    @Test
+    void execute_ExpiredStoredKey_RunsNewTransferAndReplacesKey() {
+        // Arrange: ключ просрочен, но плановая очистка его еще не удалила
+        IdempotencyKey expired = IdempotencyKey.builder()
+                .id(7L)
+                .userId(1L)
+                .idempotencyKey("key-1")
+                .requestHash(hashOf(transferDto))
+                .transactionId(5L)
+                .expiresAt(LocalDateTime.now().minusMinutes(1))
+                .build();
+        when(idempotencyKeyRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.of(expired));
+        AtomicInteger executions = new AtomicInteger();
+
+        // Act
+        Transaction result = idempotencyService.execute(1L, "key-1", transferDto, () -> {
+            executions.incrementAndGet();
+            return transaction;
+        });
+
+        // Assert
+        assertSame(transaction, result);
+        assertEquals(1, executions.get());
+        verify(idempotencyKeyRepository).deleteIfExpired(eq(7L), any(LocalDateTime.class));
+        verify(idempotencyKeyRepository).save(argThat(key -> key.getTransactionId().equals(10L)));
+        verify(transactionRepository, never()).findById(5L);
+    }
+
+    @Test
+    void execute_ExpiredCachedKey_RunsNewTransfer() {
+        // Arrange: ключ попадает в кэш уже просроченным
+        ReflectionTestUtils.setField(idempotencyService, "ttl", Duration.ofMinutes(-1));
+        when(idempotencyKeyRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.empty());
+        AtomicInteger executions = new AtomicInteger();
+        idempotencyService.execute(1L, "key-1", transferDto, () -> {
+            executions.incrementAndGet();
+            return transaction;
+        });
+
+        // Act
+        idempotencyService.execute(1L, "key-1", transferDto, () -> {
+            executions.incrementAndGet();
+            return transaction;
+        });
+
+        // Assert
+        assertEquals(2, executions.get());
+        verify(transactionRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void execute_SameKeyDifferentRequest_ThrowsException() {
+        // Arrange
+        when(idempotencyKeyRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.empty());
+        idempotencyService.execute(1L, "key-1", transferDto, () -> transaction);
+        transferDto.setAmount(BigDecimal.valueOf(200));
+
+        // Act & Assert
+        assertThrows(BusinessException.class,
+                () -> idempotencyService.execute(1L, "key-1", transferDto, () -> transaction));
+    }
+
+    @Test
+    void execute_ConcurrentRequests_RunTransferOnce() throws Exception {
+        // Arrange
+        when(idempotencyKeyRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.empty());
+        lenient().when(transactionRepository.findById(10L)).thenReturn(Optional.of(transaction));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+
+        // Act
+        CompletableFuture<Transaction> first = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute(1L, "key-1", transferDto, () -> {
+                    executions.incrementAndGet();
+                    started.countDown();
+                    awaitQuietly(release);
+                    return transaction;
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Transaction> second = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute(1L, "key-1", transferDto, () -> {
+                    executions.incrementAndGet();
+                    return transaction;
+                }));
+        release.countDown();
+
+        // Assert
+        assertSame(transaction, first.get(5, TimeUnit.SECONDS));
+        assertSame(transaction, second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void evictExpiredKeys_DeletesInBatches() {
+        // Arrange
+        when(idempotencyKeyRepository.findExpiredIds(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(1L, 2L))
+                .thenReturn(List.of(3L));
+
+        // Act
+        idempotencyService.evictExpiredKeys();
+
+        // Assert
+        verify(idempotencyKeyRepository).deleteAllByIdInBatch(List.of(1L, 2L));
+        verify(idempotencyKeyRepository).deleteAllByIdInBatch(List.of(3L));
+        verify(idempotencyKeyRepository, times(2)).findExpiredIds(any(LocalDateTime.class), any(Pageable.class));
+    }
+
+    private String hashOf(TransferDto request) {
+        return ReflectionTestUtils.invokeMethod(IdempotencyService.class, "hash", request);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
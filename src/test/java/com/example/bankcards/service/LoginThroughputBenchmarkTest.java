@@ -0,0 +1,126 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.AuthRequest;
+import com.example.bankcards.dto.UserDto;
+import com.example.bankcards.dto.UserRegistrationDto;
+import com.example.bankcards.exception.ServiceBusyException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Пропускная способность входа на H2 при разной стоимости BCrypt: входов в секунду, p50 и p99 успешных входов
+ * и число запросов, отклоненных пулом хэширования (503). Хэш пароля пересчитывается с каждой стоимостью заранее;
+ * настроенная стоимость минимальна, поэтому вход не пересчитывает хэш сам.
+ * Для сравнения замеряется цепочка обменов refresh-токена, которые пароль не проверяют.
+ * Запуск: ./mvnw test -Dtest=LoginThroughputBenchmarkTest -Dbenchmark.logins=2000 -Dbenchmark.costs=8,10,12
+ */
+@SpringBootTest(properties = "security.bcrypt.strength=4")
+@ActiveProfiles("h2")
+@EnabledIfSystemProperty(named = "benchmark.logins", matches = "\\d+")
+class LoginThroughputBenchmarkTest {
+
+    private static final int LOGINS = Integer.getInteger("benchmark.logins", 2000);
+    private static final int THREADS = Integer.getInteger("benchmark.threads", 32);
+    private static final String PASSWORD = "password123";
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserService userService;
+
+    private UserDto user;
+
+    @BeforeEach
+    void setUp() {
+        String username = "login-" + System.nanoTime();
+        user = userService.registerUser(new UserRegistrationDto(
+                username, username + "@example.com", PASSWORD, "Login", "User"));
+    }
+
+    @Test
+    void login_ThroughputAndLatencyByCost() throws Exception {
+        List<Integer> costs = Arrays.stream(System.getProperty("benchmark.costs", "8,10,12").split(","))
+                .map(String::trim)
+                .map(Integer::valueOf)
+                .toList();
+        for (int cost : costs) {
+            String currentHash = userService.findUserByUsername(user.getUsername()).orElseThrow().getPassword();
+            userService.updatePasswordHash(user.getId(), currentHash, new BCryptPasswordEncoder(cost).encode(PASSWORD));
+            run(cost);
+        }
+    }
+
+    @Test
+    void refresh_LatencyWithoutPasswordHashing() {
+        String refreshToken = authService.authenticate(new AuthRequest(user.getUsername(), PASSWORD)).getRefreshToken();
+        long[] latencies = new long[LOGINS];
+        long started = System.nanoTime();
+        for (int i = 0; i < LOGINS; i++) {
+            long start = System.nanoTime();
+            refreshToken = authService.refresh(refreshToken).getRefreshToken();
+            latencies[i] = System.nanoTime() - start;
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        Arrays.sort(latencies);
+        System.out.printf("Refresh: %d in %.2f s, %.0f refreshes/s, p50 %.1f ms, p99 %.1f ms%n",
+                LOGINS, seconds, LOGINS / seconds,
+                percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6);
+    }
+
+    private void run(int cost) throws Exception {
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicInteger rejected = new AtomicInteger();
+        AuthRequest request = new AuthRequest(user.getUsername(), PASSWORD);
+
+        ExecutorService clients = Executors.newFixedThreadPool(THREADS);
+        long started = System.nanoTime();
+        List<Future<?>> futures = IntStream.range(0, LOGINS)
+                .<Future<?>>mapToObj(i -> clients.submit(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        authService.authenticate(request);
+                        latencies.add(System.nanoTime() - start);
+                    } catch (ServiceBusyException e) {
+                        rejected.incrementAndGet();
+                    }
+                }))
+                .toList();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - started;
+        clients.shutdown();
+        assertTrue(clients.awaitTermination(1, TimeUnit.MINUTES));
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        double seconds = elapsed / 1e9;
+        System.out.printf("Login [cost %d]: %d ok, %d rejected in %.2f s, %.0f logins/s, p50 %.1f ms, p99 %.1f ms%n",
+                cost, sorted.length, rejected.get(), seconds, sorted.length / seconds,
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6);
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.AuthRequest;
+import com.example.bankcards.dto.UserDto;
+import com.example.bankcards.dto.UserRegistrationDto;
+import com.example.bankcards.security.PasswordHasher;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Пересчет хэша пароля при входе на H2: пароль, смененный между проверкой и пересчетом,
+ * не перезаписывается хэшем старого.
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+class PasswordRehashTest {
+
+    private static final String OLD_PASSWORD = "password123";
+    private static final String NEW_PASSWORD = "newPassword456";
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserService userService;
+
+    @SpyBean
+    private PasswordHasher passwordHasher;
+
+    @Test
+    void authenticate_PasswordChangedBeforeRehash_KeepsNewPassword() {
+        // Arrange: хэш с заниженной стоимостью, который вход захочет пересчитать
+        String username = "rehash-" + System.nanoTime();
+        UserDto user = userService.registerUser(new UserRegistrationDto(
+                username, username + "@example.com", OLD_PASSWORD, "Rehash", "User"));
+        String registeredHash = userService.findUserByUsername(username).orElseThrow().getPassword();
+        assertTrue(userService.updatePasswordHash(user.getId(), registeredHash,
+                new BCryptPasswordEncoder(4).encode(OLD_PASSWORD)));
+
+        // Пароль меняется после проверки старого, но до записи нового хэша
+        UserRegistrationDto passwordChange = new UserRegistrationDto(
+                username, username + "@example.com", NEW_PASSWORD, "Rehash", "User");
+        doAnswer(invocation -> {
+            userService.updateUser(user.getId(), passwordChange);
+            return invocation.callRealMethod();
+        }).when(passwordHasher).encode(OLD_PASSWORD);
+
+        // Act
+        authService.authenticate(new AuthRequest(username, OLD_PASSWORD));
+
+        // Assert
+        String storedHash = userService.findUserByUsername(username).orElseThrow().getPassword();
+        assertTrue(new BCryptPasswordEncoder().matches(NEW_PASSWORD, storedHash));
+        assertThrows(BadCredentialsException.class,
+                () -> authService.authenticate(new AuthRequest(username, OLD_PASSWORD)));
+        assertNotNull(authService.authenticate(new AuthRequest(username, NEW_PASSWORD)).getToken());
+    }
+}
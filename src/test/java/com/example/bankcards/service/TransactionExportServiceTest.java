@@ -0,0 +1,183 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.exception.ResourceNotFoundException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Выгрузка истории карты на H2: формат строк, порядок, фильтр по времени и проверка владельца.
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+class TransactionExportServiceTest {
+
+    @Autowired
+    private TransactionExportService transactionExportService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Long userId;
+    private Long otherUserId;
+    private Card card;
+    private List<Transaction> history;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = Long.toString(System.nanoTime());
+        User user = saveUser("export-" + suffix);
+        User otherUser = saveUser("export-other-" + suffix);
+        userId = user.getId();
+        otherUserId = otherUser.getId();
+
+        card = saveCard(user, suffix + "-a");
+        Card ownCard = saveCard(user, suffix + "-b");
+        Card foreignCard = saveCard(otherUser, suffix + "-c");
+
+        history = transactionRepository.saveAll(List.of(
+                transaction(card, ownCard, "10.00", "Own, \"savings\""),
+                transaction(ownCard, card, "2.50", null),
+                transaction(foreignCard, card, "7.00", "Incoming"),
+                transaction(card, foreignCard, "1.00", "Outgoing")));
+        // Чужая транзакция не должна попасть в выгрузку
+        transactionRepository.save(transaction(foreignCard, ownCard, "3.00", "Unrelated"));
+    }
+
+    @Test
+    void exportCsv_WritesHeaderAndRowsOldestFirst() throws IOException {
+        // Act
+        List<String> lines = export(TransactionExportService.ExportFormat.CSV, null, null).lines().toList();
+
+        // Assert
+        assertEquals(5, lines.size());
+        assertEquals("id,from_card_id,to_card_id,amount,status,description,failure_reason,created_at", lines.get(0));
+        for (int i = 0; i < history.size(); i++) {
+            assertTrue(lines.get(i + 1).startsWith(history.get(i).getId() + ","));
+        }
+        assertTrue(lines.get(1).contains(",10.00,SUCCESS,\"Own, \"\"savings\"\"\",,"));
+        assertTrue(lines.get(2).contains(",2.50,SUCCESS,,,"));
+    }
+
+    @Test
+    void exportCsv_FormulaLikeText_WrittenAsText() throws IOException {
+        // Arrange
+        transactionRepository.save(transaction(card, card, "1.00", "=HYPERLINK(\"http://evil\",\"x\")"));
+        transactionRepository.save(transaction(card, card, "1.00", "@SUM(A1)"));
+        transactionRepository.save(transaction(card, card, "1.00", "-5 refund"));
+
+        // Act
+        List<String> lines = export(TransactionExportService.ExportFormat.CSV, null, null).lines().toList();
+
+        // Assert
+        assertTrue(lines.get(5).contains(",SUCCESS,\"'=HYPERLINK(\"\"http://evil\"\",\"\"x\"\")\",,"));
+        assertTrue(lines.get(6).contains(",SUCCESS,'@SUM(A1),,"));
+        assertTrue(lines.get(7).contains(",SUCCESS,'-5 refund,,"));
+    }
+
+    @Test
+    void exportNdjson_WritesOneObjectPerLine() throws IOException {
+        // Act
+        List<String> lines = export(TransactionExportService.ExportFormat.NDJSON, null, null).lines().toList();
+
+        // Assert
+        assertEquals(history.size(), lines.size());
+        ObjectMapper mapper = new ObjectMapper();
+        for (int i = 0; i < history.size(); i++) {
+            JsonNode row = mapper.readTree(lines.get(i));
+            assertEquals(history.get(i).getId(), row.get("id").asLong());
+            assertEquals(0, history.get(i).getAmount().compareTo(row.get("amount").decimalValue()));
+        }
+        assertFalse(mapper.readTree(lines.get(1)).has("description"));
+    }
+
+    @Test
+    void export_RangeExcludesAllRows_WritesOnlyHeader() throws IOException {
+        // Act
+        String csv = export(TransactionExportService.ExportFormat.CSV, LocalDateTime.now().plusDays(1), null);
+        String ndjson = export(TransactionExportService.ExportFormat.NDJSON, LocalDateTime.now().plusDays(1), null);
+
+        // Assert
+        assertEquals(1, csv.lines().count());
+        assertEquals("", ndjson);
+    }
+
+    @Test
+    void export_ForeignCard_ThrowsException() {
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> transactionExportService.exportCardTransactions(
+                card.getId(), otherUserId, TransactionExportService.ExportFormat.CSV, null, null));
+    }
+
+    @Test
+    void exportFormat_Unknown_ThrowsException() {
+        // Act & Assert
+        assertEquals(TransactionExportService.ExportFormat.NDJSON, TransactionExportService.ExportFormat.of("ndjson"));
+        assertThrows(BusinessException.class, () -> TransactionExportService.ExportFormat.of("xml"));
+    }
+
+    private String export(TransactionExportService.ExportFormat format, LocalDateTime from, LocalDateTime to)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transactionExportService.exportCardTransactions(card.getId(), userId, format, from, to).writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private User saveUser(String username) {
+        return userRepository.save(User.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .password("password")
+                .enabled(true)
+                .build());
+    }
+
+    private Card saveCard(User owner, String number) {
+        return cardRepository.save(Card.builder()
+                .cardNumber("export-" + number)
+                .cardHolder("EXPORT USER")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .cvv("000")
+                .status(Card.CardStatus.ACTIVE)
+                .balance(BigDecimal.ZERO)
+                .owner(owner)
+                .build());
+    }
+
+    private static Transaction transaction(Card from, Card to, String amount, String description) {
+        return Transaction.builder()
+                .fromCard(from)
+                .toCard(to)
+                .amount(new BigDecimal(amount))
+                .status(Transaction.TransactionStatus.SUCCESS)
+                .description(description)
+                .build();
+    }
+}
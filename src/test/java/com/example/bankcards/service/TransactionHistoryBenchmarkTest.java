@@ -0,0 +1,196 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionHistoryRow;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Сравнение запросов истории транзакций пользователя на H2:
+ * прежний JPQL с DISTINCT и OR по двум спискам карт против UNION ALL по двум индексам.
+ * Половина транзакций принадлежит другому пользователю, чтобы индексы действительно отсекали строки;
+ * треть переводов пользователя — между его собственными картами.
+ * Запуск: ./mvnw test -Dtest=TransactionHistoryBenchmarkTest -Dbenchmark.rows=100000
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+@EnabledIfSystemProperty(named = "benchmark.rows", matches = "\\d+")
+class TransactionHistoryBenchmarkTest {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 100_000);
+    private static final int CARDS_PER_USER = 4;
+    private static final int PAGE_SIZE = 20;
+    private static final int ITERATIONS = 20;
+    private static final int CHUNK = 1000;
+
+    private static final String DISTINCT_OR_QUERY = """
+            SELECT DISTINCT t
+            FROM Transaction t
+            WHERE t.fromCard.id IN :fromCardIds
+               OR t.toCard.id IN :toCardIds
+            ORDER BY t.createdAt DESC, t.id DESC
+            """;
+
+    private static final String DISTINCT_OR_COUNT = """
+            SELECT COUNT(DISTINCT t)
+            FROM Transaction t
+            WHERE t.fromCard.id IN :fromCardIds
+               OR t.toCard.id IN :toCardIds
+            """;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private Long userId;
+    private List<Long> userCardIds;
+
+    @BeforeEach
+    void setUp() {
+        userCardIds = createCards("bench-user");
+        userId = cardRepository.findById(userCardIds.get(0)).orElseThrow().getOwner().getId();
+        List<Long> otherCardIds = createCards("bench-other");
+
+        // Переводы пользователя: между своими картами, на чужие карты и с чужих карт
+        for (int offset = 0; offset < ROWS; offset += CHUNK) {
+            int start = offset;
+            int size = Math.min(CHUNK, ROWS - offset);
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Transaction> chunk = new ArrayList<>(size);
+                for (int i = start; i < start + size; i++) {
+                    List<Long> from = i % 2 == 0 ? userCardIds : otherCardIds;
+                    List<Long> to = i % 3 == 0 ? userCardIds : otherCardIds;
+                    chunk.add(Transaction.builder()
+                            .fromCard(cardRepository.getReferenceById(from.get(i % CARDS_PER_USER)))
+                            .toCard(cardRepository.getReferenceById(to.get((i + 1) % CARDS_PER_USER)))
+                            .amount(BigDecimal.ONE)
+                            .status(Transaction.TransactionStatus.SUCCESS)
+                            .description("Benchmark")
+                            .build());
+                }
+                transactionRepository.saveAll(chunk);
+            });
+        }
+    }
+
+    @Test
+    void userHistory_DistinctOrVsUnionAll() {
+        long total = transactionRepository.countHistoryByOwnerId(userId);
+        long deepOffset = (total / 2 / PAGE_SIZE) * PAGE_SIZE;
+
+        assertEquals(ids(distinctOrPage(0)), rowIds(unionAllPage(0)));
+        assertEquals(ids(distinctOrPage(deepOffset)), rowIds(unionAllPage(deepOffset)));
+        assertEquals(total, distinctOrCount());
+
+        report("distinct/or, first page", measure(() -> distinctOrPage(0)));
+        report("union all, first page", measure(() -> unionAllPage(0)));
+        report("distinct/or, offset " + deepOffset, measure(() -> distinctOrPage(deepOffset)));
+        report("union all, offset " + deepOffset, measure(() -> unionAllPage(deepOffset)));
+        report("distinct/or, count", measure(this::distinctOrCount));
+        report("union all, count", measure(() -> transactionRepository.countHistoryByOwnerId(userId)));
+    }
+
+    private List<Transaction> distinctOrPage(long offset) {
+        return transactionTemplate.execute(status -> entityManager
+                .createQuery(DISTINCT_OR_QUERY, Transaction.class)
+                .setParameter("fromCardIds", userCardIds)
+                .setParameter("toCardIds", userCardIds)
+                .setFirstResult((int) offset)
+                .setMaxResults(PAGE_SIZE)
+                .getResultList());
+    }
+
+    private long distinctOrCount() {
+        return transactionTemplate.execute(status -> entityManager
+                .createQuery(DISTINCT_OR_COUNT, Long.class)
+                .setParameter("fromCardIds", userCardIds)
+                .setParameter("toCardIds", userCardIds)
+                .getSingleResult());
+    }
+
+    private List<TransactionHistoryRow> unionAllPage(long offset) {
+        return transactionTemplate.execute(status ->
+                transactionRepository.findHistoryByOwnerId(userId, offset + PAGE_SIZE, PAGE_SIZE, offset));
+    }
+
+    private List<Long> createCards(String prefix) {
+        String suffix = Long.toString(System.nanoTime());
+        User user = userRepository.save(User.builder()
+                .username(prefix + "-" + suffix)
+                .email(prefix + "-" + suffix + "@example.com")
+                .password("password")
+                .enabled(true)
+                .build());
+
+        List<Long> cardIds = new ArrayList<>();
+        for (int i = 0; i < CARDS_PER_USER; i++) {
+            cardIds.add(cardRepository.save(Card.builder()
+                    .cardNumber(prefix + "-" + suffix + "-" + i)
+                    .cardHolder("BENCH USER")
+                    .expiryDate(LocalDate.now().plusYears(3))
+                    .cvv("000")
+                    .status(Card.CardStatus.ACTIVE)
+                    .balance(BigDecimal.ZERO)
+                    .owner(user)
+                    .build()).getId());
+        }
+        return cardIds;
+    }
+
+    private static List<Long> ids(List<Transaction> transactions) {
+        return transactions.stream().map(Transaction::getId).toList();
+    }
+
+    private static List<Long> rowIds(List<TransactionHistoryRow> rows) {
+        return rows.stream().map(TransactionHistoryRow::getId).toList();
+    }
+
+    private static long[] measure(Supplier<?> query) {
+        query.get();
+        long[] nanos = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            query.get();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static void report(String query, long[] sortedNanos) {
+        System.out.printf("History [%s]: p50=%.2f ms, max=%.2f ms%n", query,
+                sortedNanos[sortedNanos.length / 2] / 1_000_000.0, sortedNanos[sortedNanos.length - 1] / 1_000_000.0);
+    }
+}
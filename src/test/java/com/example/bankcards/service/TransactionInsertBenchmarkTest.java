@@ -0,0 +1,168 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Сравнение скорости вставки транзакций на H2.
+ * "identity" — id из identity-столбца: пакетный INSERT через JDBC с возвратом сгенерированных ключей
+ * (отдельная сущность с GenerationType.IDENTITY попала бы в сканирование сущностей всех тестовых контекстов).
+ * "sequence" — текущее отображение {@link Transaction}: id из пула последовательности (pooled-lo)
+ * и пакетные INSERT (hibernate.jdbc.batch_size).
+ * Запуск: ./mvnw test -Dtest=TransactionInsertBenchmarkTest -Dbenchmark.rows=100000
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+@EnabledIfSystemProperty(named = "benchmark.rows", matches = "\\d+")
+class TransactionInsertBenchmarkTest {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 100_000);
+    private static final int CHUNK = 1000;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Long fromCardId;
+    private Long toCardId;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = Long.toString(System.nanoTime());
+        User user = userRepository.save(User.builder()
+                .username("bench-" + suffix)
+                .email("bench-" + suffix + "@example.com")
+                .password("password")
+                .enabled(true)
+                .build());
+        fromCardId = saveCard(user, suffix + "-from").getId();
+        toCardId = saveCard(user, suffix + "-to").getId();
+    }
+
+    @Test
+    void insertTransactions_IdentityVsSequence() {
+        long identityNanos = timed(this::insertWithIdentity);
+        // Строки выше получили id от identity-столбца, последовательность продолжает после них
+        jdbcTemplate.execute("ALTER SEQUENCE transactions_seq RESTART WITH (SELECT MAX(id) + 1 FROM transactions)");
+        long sequenceNanos = timed(this::insertWithJpaBatches);
+
+        report("identity", identityNanos);
+        report("sequence, pooled-lo", sequenceNanos);
+
+        Integer inserted = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM transactions WHERE from_card_id = ?", Integer.class, fromCardId);
+        assertEquals(2 * ROWS, inserted);
+    }
+
+    private void insertWithIdentity() {
+        for (int offset = 0; offset < ROWS; offset += CHUNK) {
+            int size = Math.min(CHUNK, ROWS - offset);
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                    connection -> connection.prepareStatement("""
+                            INSERT INTO transactions (from_card_id, to_card_id, amount, status, description, created_at)
+                            VALUES (?, ?, ?, ?, ?, ?)
+                            """, Statement.RETURN_GENERATED_KEYS),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            ps.setLong(1, fromCardId);
+                            ps.setLong(2, toCardId);
+                            ps.setBigDecimal(3, BigDecimal.ONE);
+                            ps.setString(4, "SUCCESS");
+                            ps.setString(5, "Benchmark");
+                            ps.setTimestamp(6, Timestamp.valueOf(LocalDateTime.now()));
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return size;
+                        }
+                    },
+                    keyHolder));
+            assertEquals(size, keyHolder.getKeyList().size());
+        }
+    }
+
+    private void insertWithJpaBatches() {
+        for (int offset = 0; offset < ROWS; offset += CHUNK) {
+            int size = Math.min(CHUNK, ROWS - offset);
+            transactionTemplate.executeWithoutResult(status -> {
+                Card fromCard = cardRepository.getReferenceById(fromCardId);
+                Card toCard = cardRepository.getReferenceById(toCardId);
+                List<Transaction> chunk = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    chunk.add(Transaction.builder()
+                            .fromCard(fromCard)
+                            .toCard(toCard)
+                            .amount(BigDecimal.ONE)
+                            .status(Transaction.TransactionStatus.SUCCESS)
+                            .description("Benchmark")
+                            .build());
+                }
+                transactionRepository.saveAll(chunk);
+            });
+        }
+    }
+
+    private Card saveCard(User user, String number) {
+        return cardRepository.save(Card.builder()
+                .cardNumber("bench-" + number)
+                .cardHolder("BENCH USER")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .cvv("000")
+                .status(Card.CardStatus.ACTIVE)
+                .balance(BigDecimal.ZERO)
+                .owner(user)
+                .build());
+    }
+
+    private static long timed(Runnable action) {
+        long start = System.nanoTime();
+        action.run();
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String mode, long nanos) {
+        double seconds = nanos / 1_000_000_000.0;
+        System.out.printf("Insert [%s]: %d transactions in %.2f s, %.0f rows/s%n", mode, ROWS, seconds, ROWS / seconds);
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Нагрузочный тест переводов на H2: множество потоков переводят деньги
+ * между небольшим набором карт (в том числе встречными переводами A→B и B→A).
+ * Прогоняется в трех режимах: с блокировкой строк, с условными UPDATE
+ * и через полосы последовательного исполнения с групповым коммитом.
+ * Отдельно проверяется асинхронный прием переводов в статусе PENDING и их фоновое проведение.
+ * Размер нагрузки настраивается через -Dstress.threads, -Dstress.transfers, -Dstress.cards.
+ */
+@SpringBootTest(properties = "transfer.lanes.enabled=true")
+@ActiveProfiles("h2")
+class TransferConcurrencyStressTest {
+
+    private static final int THREADS = Integer.getInteger("stress.threads", 8);
+    private static final int TRANSFERS = Integer.getInteger("stress.transfers", 2000);
+    private static final int CARDS = Integer.getInteger("stress.cards", 8);
+    private static final BigDecimal INITIAL_BALANCE = BigDecimal.valueOf(1000);
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @SpyBean
+    private CardService cardService;
+
+    private Long userId;
+    private List<Long> cardIds;
+    private Queue<Long> lockWaitNanos;
+    private AtomicInteger laneGroups;
+    private Object fastPathEnabled;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = Long.toString(System.nanoTime());
+        User user = userRepository.save(User.builder()
+                .username("stress-" + suffix)
+                .email("stress-" + suffix + "@example.com")
+                .password("password")
+                .enabled(true)
+                .build());
+        userId = user.getId();
+
+        cardIds = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            Card card = cardRepository.save(Card.builder()
+                    .cardNumber("stress-" + suffix + "-" + i)
+                    .cardHolder("STRESS USER")
+                    .expiryDate(LocalDate.now().plusYears(3))
+                    .cvv("000")
+                    .status(Card.CardStatus.ACTIVE)
+                    .balance(INITIAL_BALANCE)
+                    .owner(user)
+                    .build());
+            cardIds.add(card.getId());
+        }
+
+        // Время захвата строки карты: SELECT ... FOR UPDATE или условный UPDATE
+        lockWaitNanos = new ConcurrentLinkedQueue<>();
+        doAnswer(this::timed).when(cardService).getCardByIdForUpdate(anyLong());
+        doAnswer(this::timed).when(cardService).debitCard(anyLong(), anyLong(), any(BigDecimal.class));
+        doAnswer(this::timed).when(cardService).creditCard(anyLong(), anyLong(), any(BigDecimal.class));
+
+        // Каждая группа полосы блокирует свои карты одним запросом и завершается одним коммитом
+        laneGroups = new AtomicInteger();
+        doAnswer(invocation -> {
+            laneGroups.incrementAndGet();
+            return timed(invocation);
+        }).when(cardService).getCardsByIdsForUpdate(any());
+
+        fastPathEnabled = ReflectionTestUtils.getField(transferServiceTarget(), "fastPathEnabled");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(transferServiceTarget(), "fastPathEnabled", fastPathEnabled);
+    }
+
+    @ParameterizedTest(name = "mode={0}")
+    @ValueSource(strings = {"row locking", "conditional update", "lanes"})
+    void concurrentTransfers_PreserveTotalBalance(String mode) throws Exception {
+        boolean lanes = mode.equals("lanes");
+        ReflectionTestUtils.setField(transferServiceTarget(), "fastPathEnabled", mode.equals("conditional update"));
+        BigDecimal totalBefore = totalBalance();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+
+        for (int i = 0; i < TRANSFERS; i++) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    if (lanes) {
+                        transferService.submitTransfer(randomTransfer(), userId).join();
+                    } else {
+                        transferService.transferBetweenOwnCards(randomTransfer(), userId);
+                    }
+                    completed.incrementAndGet();
+                } catch (InsufficientFundsException e) {
+                    rejected.incrementAndGet();
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof InsufficientFundsException) {
+                        rejected.incrementAndGet();
+                    } else {
+                        errors.add(e.getCause());
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES), "Transfers did not finish in time");
+        double elapsedSeconds = (System.nanoTime() - startedAt) / 1_000_000_000.0;
+
+        report(mode, completed.get(), rejected.get(), lanes ? laneGroups.get() : TRANSFERS, elapsedSeconds);
+
+        assertTrue(errors.isEmpty(), () -> "Unexpected transfer failures: " + errors.peek());
+        assertEquals(TRANSFERS, completed.get() + rejected.get());
+        assertEquals(0, totalBefore.compareTo(totalBalance()), "Total balance changed");
+        cardRepository.findAllById(cardIds)
+                .forEach(card -> assertTrue(card.getBalance().signum() >= 0, "Negative balance on card " + card.getId()));
+    }
+
+    @Test
+    void pendingTransfers_AreSettledInBackground() throws Exception {
+        BigDecimal totalBefore = totalBalance();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < TRANSFERS; i++) {
+            executor.submit(() -> {
+                try {
+                    transferService.submitPendingTransfer(randomTransfer(), userId);
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES), "Submissions did not finish in time");
+        double submitSeconds = (System.nanoTime() - startedAt) / 1_000_000_000.0;
+        assertTrue(errors.isEmpty(), () -> "Unexpected submission failures: " + errors.peek());
+
+        // Два обработчика параллельно с плановым запуском: пачки разбираются через SKIP LOCKED
+        long settleStartedAt = System.nanoTime();
+        ExecutorService settlers = Executors.newFixedThreadPool(2);
+        while (countByStatus("PENDING") > 0) {
+            List<Future<?>> runs = List.of(
+                    settlers.submit(transferService::settlePendingTransfers),
+                    settlers.submit(transferService::settlePendingTransfers));
+            for (Future<?> run : runs) {
+                run.get(1, TimeUnit.MINUTES);
+            }
+        }
+        settlers.shutdown();
+        double settleSeconds = (System.nanoTime() - settleStartedAt) / 1_000_000_000.0;
+
+        System.out.printf("Stress [pending]: %d transfers accepted in %.2f s (%.0f transfers/s), settled in %.2f s (%d success, %d failed)%n",
+                TRANSFERS, submitSeconds, TRANSFERS / submitSeconds, settleSeconds,
+                countByStatus("SUCCESS"), countByStatus("FAILED"));
+
+        assertEquals(TRANSFERS, countByStatus("SUCCESS") + countByStatus("FAILED"));
+        assertEquals(0, totalBefore.compareTo(totalBalance()), "Total balance changed");
+        cardRepository.findAllById(cardIds)
+                .forEach(card -> assertTrue(card.getBalance().signum() >= 0, "Negative balance on card " + card.getId()));
+    }
+
+    private int countByStatus(String status) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM transactions t JOIN cards c ON c.id = t.from_card_id "
+                        + "WHERE c.owner_id = ? AND t.status = ?",
+                Integer.class, userId, status);
+    }
+
+    private Object timed(InvocationOnMock invocation) throws Throwable {
+        long start = System.nanoTime();
+        Object result = invocation.callRealMethod();
+        lockWaitNanos.add(System.nanoTime() - start);
+        return result;
+    }
+
+    private TransferService transferServiceTarget() {
+        return AopTestUtils.getTargetObject(transferService);
+    }
+
+    private TransferDto randomTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(CARDS);
+        int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+        return TransferDto.builder()
+                .fromCardId(cardIds.get(from))
+                .toCardId(cardIds.get(to))
+                .amount(BigDecimal.valueOf(random.nextInt(1, 50)))
+                .description("Stress transfer")
+                .build();
+    }
+
+    private BigDecimal totalBalance() {
+        return cardRepository.findAllById(cardIds).stream()
+                .map(Card::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private void report(String mode, int completed, int rejected, int commits, double elapsedSeconds) {
+        long[] waits = lockWaitNanos.stream().mapToLong(Long::longValue).sorted().toArray();
+        System.out.printf("Stress [%s]: %d threads, %d cards, %d transfers (%d completed, %d rejected) in %.2f s, %.0f transfers/s, %d commits%n",
+                mode, THREADS, CARDS, TRANSFERS, completed, rejected, elapsedSeconds, TRANSFERS / elapsedSeconds, commits);
+        System.out.printf("Lock wait (ms): p50=%.3f p95=%.3f p99=%.3f max=%.3f%n",
+                percentile(waits, 50), percentile(waits, 95), percentile(waits, 99), percentile(waits, 100));
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.ServiceBusyException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferLanesTest {
+
+    @Test
+    void submit_QueueFull_RejectsWithoutQueueing() throws Exception {
+        // Arrange: поток полосы занят первой группой, в очереди помещается один перевод
+        CountDownLatch settling = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TransferLanes lanes = new TransferLanes(1, 1, 1, group -> {
+            settling.countDown();
+            awaitQuietly(release);
+            group.forEach(submission -> submission.result().complete(Transaction.builder().build()));
+        });
+
+        try {
+            CompletableFuture<Transaction> settled = lanes.submit(transfer(), 1L);
+            assertTrue(settling.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Transaction> queued = lanes.submit(transfer(), 1L);
+
+            // Act
+            CompletableFuture<Transaction> rejected = lanes.submit(transfer(), 1L);
+
+            // Assert
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+            assertInstanceOf(ServiceBusyException.class, exception.getCause());
+            release.countDown();
+            for (CompletableFuture<Transaction> accepted : List.of(settled, queued)) {
+                assertNotNull(accepted.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            release.countDown();
+            lanes.shutdown();
+        }
+    }
+
+    private static TransferDto transfer() {
+        return TransferDto.builder().fromCardId(1L).toCardId(2L).amount(BigDecimal.ONE).build();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,24 +1,59 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.CursorPage;
+import com.example.bankcards.dto.TransactionHistoryRow;
+import com.example.bankcards.dto.TransactionView;
 import com.example.bankcards.dto.TransferDto;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transaction;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.exception.CardBlockedException;
 import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.ResourceNotFoundException;
 import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.util.CardMaskingUtil;
+import com.example.bankcards.util.CursorUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,6 +65,15 @@ class TransferServiceTest {
     @Mock
     private TransactionRepository transactionRepository;
 
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private CursorUtil cursorUtil;
+
+    @Spy
+    private CardMaskingUtil cardMaskingUtil;
+
     @InjectMocks
     private TransferService transferService;
 
@@ -48,6 +92,7 @@ class TransferServiceTest {
         sourceCard = Card.builder()
                 .id(1L)
                 .cardNumber("encrypted123")
+                .panLast4("3456")
                 .cardHolder("TEST USER")
                 .expiryDate(LocalDate.now().plusYears(3))
                 .status(Card.CardStatus.ACTIVE)
@@ -58,6 +103,7 @@ class TransferServiceTest {
         destinationCard = Card.builder()
                 .id(2L)
                 .cardNumber("encrypted456")
+                .panLast4("7890")
                 .cardHolder("TEST USER")
                 .expiryDate(LocalDate.now().plusYears(3))
                 .status(Card.CardStatus.ACTIVE)
@@ -76,8 +122,8 @@ class TransferServiceTest {
     @Test
     void transferBetweenOwnCards_Success() {
         // Arrange
-        when(cardService.getCardByIdInternal(1L)).thenReturn(sourceCard);
-        when(cardService.getCardByIdInternal(2L)).thenReturn(destinationCard);
+        when(cardService.getCardByIdForUpdate(1L)).thenReturn(sourceCard);
+        when(cardService.getCardByIdForUpdate(2L)).thenReturn(destinationCard);
         doNothing().when(cardService).validateCardForTransaction(any(Card.class));
         when(cardService.saveCard(any(Card.class))).thenAnswer(i -> i.getArguments()[0]);
         when(transactionRepository.save(any(Transaction.class))).thenAnswer(i -> {
@@ -121,8 +167,8 @@ class TransferServiceTest {
     void transferBetweenOwnCards_InsufficientFunds_ThrowsException() {
         // Arrange
         transferDto.setAmount(BigDecimal.valueOf(2000));
-        when(cardService.getCardByIdInternal(1L)).thenReturn(sourceCard);
-        when(cardService.getCardByIdInternal(2L)).thenReturn(destinationCard);
+        when(cardService.getCardByIdForUpdate(1L)).thenReturn(sourceCard);
+        when(cardService.getCardByIdForUpdate(2L)).thenReturn(destinationCard);
         doNothing().when(cardService).validateCardForTransaction(any(Card.class));
 
         // Act & Assert
@@ -136,11 +182,417 @@ class TransferServiceTest {
         User anotherUser = User.builder().id(2L).username("another").build();
         destinationCard.setOwner(anotherUser);
 
+        when(cardService.getCardByIdForUpdate(1L)).thenReturn(sourceCard);
+        when(cardService.getCardByIdForUpdate(2L)).thenReturn(destinationCard);
+
+        // Act & Assert
+        assertThrows(BusinessException.class,
+                () -> transferService.transferBetweenOwnCards(transferDto, 1L));
+    }
+
+    @Test
+    void transferBetweenOwnCards_LocksCardsInAscendingIdOrder() {
+        // Arrange
+        transferDto.setFromCardId(2L);
+        transferDto.setToCardId(1L);
+        when(cardService.getCardByIdForUpdate(1L)).thenReturn(sourceCard);
+        when(cardService.getCardByIdForUpdate(2L)).thenReturn(destinationCard);
+        doNothing().when(cardService).validateCardForTransaction(any(Card.class));
+        when(cardService.saveCard(any(Card.class))).thenAnswer(i -> i.getArguments()[0]);
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArguments()[0]);
+
+        // Act
+        Transaction result = transferService.transferBetweenOwnCards(transferDto, 1L);
+
+        // Assert
+        InOrder inOrder = inOrder(cardService);
+        inOrder.verify(cardService).getCardByIdForUpdate(1L);
+        inOrder.verify(cardService).getCardByIdForUpdate(2L);
+        assertSame(destinationCard, result.getFromCard());
+        assertSame(sourceCard, result.getToCard());
+        assertEquals(BigDecimal.valueOf(400), destinationCard.getBalance());
+        assertEquals(BigDecimal.valueOf(1100), sourceCard.getBalance());
+    }
+
+    @Test
+    void transferBetweenOwnCards_FastPath_Success() {
+        // Arrange
+        ReflectionTestUtils.setField(transferService, "fastPathEnabled", true);
+        when(cardService.debitCard(1L, 1L, BigDecimal.valueOf(100))).thenReturn(true);
+        when(cardService.creditCard(2L, 1L, BigDecimal.valueOf(100))).thenReturn(true);
+        when(cardService.getCardReference(1L)).thenReturn(sourceCard);
+        when(cardService.getCardReference(2L)).thenReturn(destinationCard);
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArguments()[0]);
+
+        // Act
+        Transaction result = transferService.transferBetweenOwnCards(transferDto, 1L);
+
+        // Assert
+        assertEquals(Transaction.TransactionStatus.SUCCESS, result.getStatus());
+        assertSame(sourceCard, result.getFromCard());
+        assertSame(destinationCard, result.getToCard());
+        verify(cardService, never()).getCardByIdForUpdate(anyLong());
+        verify(cardService, never()).saveCard(any(Card.class));
+    }
+
+    @Test
+    void transferBetweenOwnCards_FastPath_InsufficientFunds_ThrowsException() {
+        // Arrange
+        ReflectionTestUtils.setField(transferService, "fastPathEnabled", true);
+        transferDto.setAmount(BigDecimal.valueOf(2000));
+        when(cardService.debitCard(1L, 1L, BigDecimal.valueOf(2000))).thenReturn(false);
         when(cardService.getCardByIdInternal(1L)).thenReturn(sourceCard);
+
+        // Act & Assert
+        assertThrows(InsufficientFundsException.class,
+                () -> transferService.transferBetweenOwnCards(transferDto, 1L));
+        verify(cardService, never()).creditCard(anyLong(), anyLong(), any(BigDecimal.class));
+        verify(transactionRepository, never()).save(any(Transaction.class));
+    }
+
+    @Test
+    void transferBetweenOwnCards_FastPath_BlockedDestination_ThrowsException() {
+        // Arrange
+        ReflectionTestUtils.setField(transferService, "fastPathEnabled", true);
+        destinationCard.setStatus(Card.CardStatus.BLOCKED);
+        when(cardService.debitCard(1L, 1L, BigDecimal.valueOf(100))).thenReturn(true);
+        when(cardService.creditCard(2L, 1L, BigDecimal.valueOf(100))).thenReturn(false);
         when(cardService.getCardByIdInternal(2L)).thenReturn(destinationCard);
+        doThrow(new CardBlockedException("Card is blocked")).when(cardService).validateCardForTransaction(destinationCard);
 
         // Act & Assert
-        assertThrows(BusinessException.class,
+        assertThrows(CardBlockedException.class,
                 () -> transferService.transferBetweenOwnCards(transferDto, 1L));
+        verify(transactionRepository, never()).save(any(Transaction.class));
+    }
+
+    @Test
+    void transferBetweenOwnCards_FastPath_UpdatesCardsInAscendingIdOrder() {
+        // Arrange
+        ReflectionTestUtils.setField(transferService, "fastPathEnabled", true);
+        transferDto.setFromCardId(2L);
+        transferDto.setToCardId(1L);
+        when(cardService.debitCard(2L, 1L, BigDecimal.valueOf(100))).thenReturn(true);
+        when(cardService.creditCard(1L, 1L, BigDecimal.valueOf(100))).thenReturn(true);
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArguments()[0]);
+
+        // Act
+        transferService.transferBetweenOwnCards(transferDto, 1L);
+
+        // Assert
+        InOrder inOrder = inOrder(cardService);
+        inOrder.verify(cardService).creditCard(1L, 1L, BigDecimal.valueOf(100));
+        inOrder.verify(cardService).debitCard(2L, 1L, BigDecimal.valueOf(100));
+    }
+
+    @Test
+    void transferBatch_BestEffort_AppliesValidTransfersOnly() {
+        // Arrange
+        BatchTransferRequest request = BatchTransferRequest.builder()
+                .transfers(List.of(
+                        transferDto,
+                        TransferDto.builder().fromCardId(2L).toCardId(1L).amount(BigDecimal.valueOf(5000)).build(),
+                        TransferDto.builder().fromCardId(2L).toCardId(1L).amount(BigDecimal.valueOf(50)).build()))
+                .mode(BatchTransferRequest.Mode.BEST_EFFORT)
+                .build();
+        when(cardService.getCardOwners(anyCollection())).thenReturn(Map.of(1L, 1L, 2L, 1L));
+        when(cardService.getCardsByIdsForUpdate(anyCollection())).thenReturn(List.of(sourceCard, destinationCard));
+        when(transactionRepository.saveAll(anyList())).thenAnswer(i -> i.getArguments()[0]);
+
+        // Act
+        BatchTransferResponse response = transferService.transferBatch(request, 1L);
+
+        // Assert
+        assertEquals(2, response.getSucceeded());
+        assertEquals(1, response.getFailed());
+        assertEquals(Transaction.TransactionStatus.FAILED, response.getResults().get(1).getStatus());
+        assertEquals("Insufficient funds on source card", response.getResults().get(1).getMessage());
+        assertEquals(BigDecimal.valueOf(950), sourceCard.getBalance());
+        assertEquals(BigDecimal.valueOf(550), destinationCard.getBalance());
+        verify(cardService, times(1)).getCardsByIdsForUpdate(anyCollection());
+    }
+
+    @Test
+    void transferBatch_AllOrNothing_RejectsWholeBatchOnFailure() {
+        // Arrange
+        BatchTransferRequest request = BatchTransferRequest.builder()
+                .transfers(List.of(
+                        transferDto,
+                        TransferDto.builder().fromCardId(1L).toCardId(3L).amount(BigDecimal.TEN).build()))
+                .mode(BatchTransferRequest.Mode.ALL_OR_NOTHING)
+                .build();
+        when(cardService.getCardOwners(anyCollection())).thenReturn(Map.of(1L, 1L, 2L, 1L));
+        when(cardService.getCardsByIdsForUpdate(anyCollection())).thenReturn(List.of(sourceCard, destinationCard));
+
+        // Act
+        BatchTransferResponse response = transferService.transferBatch(request, 1L);
+
+        // Assert
+        assertEquals(0, response.getSucceeded());
+        assertEquals(2, response.getFailed());
+        assertEquals("Card not found with id: 3", response.getResults().get(1).getMessage());
+        assertEquals(BigDecimal.valueOf(1000), sourceCard.getBalance());
+        assertEquals(BigDecimal.valueOf(500), destinationCard.getBalance());
+        verify(transactionRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void submitTransfer_Lanes_SettlesGroupAndReportsEachResult() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(transferService, "lanesEnabled", true);
+        ReflectionTestUtils.setField(transferService, "laneCount", 1);
+        ReflectionTestUtils.setField(transferService, "laneQueueCapacity", 16);
+        ReflectionTestUtils.setField(transferService, "laneMaxGroupSize", 16);
+        doAnswer(i -> {
+            i.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(cardService.getCardOwners(anyCollection())).thenReturn(Map.of(1L, 1L, 2L, 1L));
+        when(cardService.getCardsByIdsForUpdate(anyCollection())).thenReturn(List.of(sourceCard, destinationCard));
+        when(transactionRepository.saveAll(anyList())).thenAnswer(i -> i.getArguments()[0]);
+        transferService.startLanes();
+
+        try {
+            // Act
+            CompletableFuture<Transaction> accepted = transferService.submitTransfer(transferDto, 1L);
+            CompletableFuture<Transaction> rejected = transferService.submitTransfer(
+                    TransferDto.builder().fromCardId(2L).toCardId(1L).amount(BigDecimal.valueOf(5000)).build(), 1L);
+
+            // Assert
+            assertEquals(Transaction.TransactionStatus.SUCCESS, accepted.get(5, TimeUnit.SECONDS).getStatus());
+            ExecutionException exception = assertThrows(ExecutionException.class,
+                    () -> rejected.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(InsufficientFundsException.class, exception.getCause());
+            assertEquals(BigDecimal.valueOf(900), sourceCard.getBalance());
+            assertEquals(BigDecimal.valueOf(600), destinationCard.getBalance());
+        } finally {
+            transferService.stopLanes();
+        }
+    }
+
+    @Test
+    void submitPendingTransfer_SavesPendingTransactionWithoutChangingBalances() {
+        // Arrange
+        when(cardService.getCardByIdInternal(1L)).thenReturn(sourceCard);
+        when(cardService.getCardByIdInternal(2L)).thenReturn(destinationCard);
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArguments()[0]);
+
+        // Act
+        Transaction result = transferService.submitPendingTransfer(transferDto, 1L);
+
+        // Assert
+        assertEquals(Transaction.TransactionStatus.PENDING, result.getStatus());
+        assertEquals(BigDecimal.valueOf(1000), sourceCard.getBalance());
+        assertEquals(BigDecimal.valueOf(500), destinationCard.getBalance());
+        verify(cardService, never()).getCardByIdForUpdate(anyLong());
+    }
+
+    @Test
+    void transferBatch_ForeignCard_RejectedWithoutLockingIt() {
+        // Arrange: карта 3 принадлежит другому пользователю
+        BatchTransferRequest request = BatchTransferRequest.builder()
+                .transfers(List.of(
+                        transferDto,
+                        TransferDto.builder().fromCardId(1L).toCardId(3L).amount(BigDecimal.TEN).build()))
+                .mode(BatchTransferRequest.Mode.BEST_EFFORT)
+                .build();
+        when(cardService.getCardOwners(anyCollection())).thenReturn(Map.of(1L, 1L, 2L, 1L, 3L, 2L));
+        when(cardService.getCardsByIdsForUpdate(anyCollection())).thenReturn(List.of(sourceCard, destinationCard));
+        when(transactionRepository.saveAll(anyList())).thenAnswer(i -> i.getArguments()[0]);
+
+        // Act
+        BatchTransferResponse response = transferService.transferBatch(request, 1L);
+
+        // Assert
+        assertEquals(1, response.getSucceeded());
+        assertEquals("You can only transfer between your own cards", response.getResults().get(1).getMessage());
+        verify(cardService).getCardsByIdsForUpdate(Set.of(1L, 2L));
+    }
+
+    @Test
+    void transferBatch_OnlyForeignCards_LocksNothing() {
+        // Arrange
+        BatchTransferRequest request = BatchTransferRequest.builder()
+                .transfers(List.of(TransferDto.builder().fromCardId(3L).toCardId(4L).amount(BigDecimal.TEN).build()))
+                .mode(BatchTransferRequest.Mode.ALL_OR_NOTHING)
+                .build();
+        when(cardService.getCardOwners(anyCollection())).thenReturn(Map.of(3L, 2L, 4L, 2L));
+
+        // Act
+        BatchTransferResponse response = transferService.transferBatch(request, 1L);
+
+        // Assert
+        assertEquals(1, response.getFailed());
+        verify(cardService, never()).getCardsByIdsForUpdate(anyCollection());
+    }
+
+    @Test
+    void settlePendingTransfers_AppliesValidTransfersAndFailsOthers() {
+        // Arrange
+        ReflectionTestUtils.setField(transferService, "settlementEnabled", true);
+        ReflectionTestUtils.setField(transferService, "settlementBatchSize", 10);
+        Transaction valid = pendingTransaction(11L, sourceCard, destinationCard, BigDecimal.valueOf(100));
+        Transaction overdraft = pendingTransaction(12L, destinationCard, sourceCard, BigDecimal.valueOf(5000));
+        when(transactionTemplate.execute(any())).thenAnswer(i ->
+                i.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(transactionRepository.findPendingForSettlement(any(Pageable.class))).thenReturn(List.of(valid, overdraft));
+        when(cardService.getCardsByIdsForUpdate(anyCollection())).thenReturn(List.of(sourceCard, destinationCard));
+
+        // Act
+        transferService.settlePendingTransfers();
+
+        // Assert
+        assertEquals(Transaction.TransactionStatus.SUCCESS, valid.getStatus());
+        assertEquals(Transaction.TransactionStatus.FAILED, overdraft.getStatus());
+        assertEquals("Insufficient funds on source card", overdraft.getFailureReason());
+        assertEquals(BigDecimal.valueOf(900), sourceCard.getBalance());
+        assertEquals(BigDecimal.valueOf(600), destinationCard.getBalance());
+    }
+
+    @Test
+    void getTransferStatus_OtherUsersTransaction_ThrowsNotFound() {
+        // Arrange
+        Transaction transaction = pendingTransaction(11L, sourceCard, destinationCard, BigDecimal.TEN);
+        when(transactionRepository.findById(11L)).thenReturn(Optional.of(transaction));
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> transferService.getTransferStatus(11L, 2L));
+    }
+
+    @Test
+    void getUserTransactions_PushesTopNIntoEachBranch() {
+        // Arrange
+        Transaction transaction = historyTransaction(5L, LocalDateTime.now());
+        when(transactionRepository.findHistoryByOwnerId(1L, 30L, 10, 20L)).thenReturn(List.of(historyRow(transaction)));
+
+        // Act
+        Page<TransactionView> page = transferService.getUserTransactions(1L, PageRequest.of(2, 10));
+
+        // Assert: та же маска, что и в ответе на сам перевод
+        assertEquals(List.of(transferService.toView(transaction)), page.getContent());
+        assertEquals(sourceCard.getId(), page.getContent().get(0).getFromCardId());
+        assertEquals("**** **** **** 3456", page.getContent().get(0).getFromCardMasked());
+        assertEquals("**** **** **** 7890", page.getContent().get(0).getToCardMasked());
+        assertEquals(21L, page.getTotalElements());
+        // Последняя неполная страница: общее число известно без COUNT
+        verify(transactionRepository, never()).countHistoryByOwnerId(anyLong());
+        // Карты пользователя соединяются в SQL: ни сущностей карт, ни расшифровки номеров
+        verifyNoInteractions(cardService);
+    }
+
+    @Test
+    void getCardTransactions_Cursor_MergesBothSidesAndReturnsNextCursor() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        TransactionView newest = historyView(3L, now);
+        TransactionView middle = historyView(2L, now.minusMinutes(1));
+        TransactionView oldest = historyView(1L, now.minusMinutes(2));
+        when(transactionRepository.findOutgoingBefore(anyCollection(), any(), anyLong(), any(Limit.class)))
+                .thenReturn(List.of(newest, oldest));
+        when(transactionRepository.findIncomingBefore(anyCollection(), any(), anyLong(), any(Limit.class)))
+                .thenReturn(List.of(middle));
+
+        // Act
+        CursorPage<TransactionView> page = transferService.getCardTransactions(1L, null, 2);
+
+        // Assert
+        assertEquals(List.of(newest, middle), page.getItems());
+        assertEquals(new CursorUtil.Cursor(middle.getCreatedAt(), 2L), cursorUtil.decode(page.getNextCursor()));
+        verify(transactionRepository).findOutgoingBefore(anyCollection(), any(), anyLong(), eq(Limit.of(3)));
+    }
+
+    @Test
+    void getUserTransactions_Cursor_OwnCardTransferReturnedOnce() {
+        // Arrange
+        TransactionView transaction = historyView(5L, LocalDateTime.now());
+        CursorUtil.Cursor position = new CursorUtil.Cursor(LocalDateTime.now().plusMinutes(1), 10L);
+        when(cardService.getUserCardIds(1L)).thenReturn(List.of(1L, 2L));
+        when(transactionRepository.findOutgoingBefore(List.of(1L, 2L), position.createdAt(), 10L, Limit.of(21)))
+                .thenReturn(List.of(transaction));
+        when(transactionRepository.findIncomingBefore(List.of(1L, 2L), position.createdAt(), 10L, Limit.of(21)))
+                .thenReturn(List.of(transaction));
+
+        // Act
+        CursorPage<TransactionView> page = transferService.getUserTransactions(
+                1L, cursorUtil.encode(position.createdAt(), position.id()), 20);
+
+        // Assert
+        assertEquals(List.of(transaction), page.getItems());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void getCardTransactions_InvalidCursor_ThrowsException() {
+        // Act & Assert
+        assertThrows(BusinessException.class, () -> transferService.getCardTransactions(1L, "not-a-cursor", 20));
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @Test
+    void getCardTransactions_CursorForeignCard_ThrowsAccessDenied() {
+        // Arrange
+        when(cardService.isCardOwner(1L, 2L)).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(AccessDeniedException.class, () -> transferService.getCardTransactions(1L, 2L, null, 20));
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @Test
+    void getCardTransactions_PageForeignCard_ThrowsAccessDenied() {
+        // Arrange
+        when(cardService.isCardOwner(1L, 2L)).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(AccessDeniedException.class,
+                () -> transferService.getCardTransactions(1L, 2L, PageRequest.of(0, 10)));
+        verifyNoInteractions(transactionRepository);
+    }
+
+    private Transaction historyTransaction(Long id, LocalDateTime createdAt) {
+        return Transaction.builder()
+                .id(id)
+                .fromCard(sourceCard)
+                .toCard(destinationCard)
+                .amount(BigDecimal.TEN)
+                .status(Transaction.TransactionStatus.SUCCESS)
+                .createdAt(createdAt)
+                .build();
+    }
+
+    private static TransactionHistoryRow historyRow(Transaction transaction) {
+        Map<String, Object> columns = new HashMap<>();
+        columns.put("id", transaction.getId());
+        columns.put("fromCardId", transaction.getFromCard().getId());
+        columns.put("toCardId", transaction.getToCard().getId());
+        columns.put("amount", transaction.getAmount());
+        columns.put("status", transaction.getStatus());
+        columns.put("createdAt", transaction.getCreatedAt());
+        columns.put("fromCardLast4", transaction.getFromCard().getPanLast4());
+        columns.put("toCardLast4", transaction.getToCard().getPanLast4());
+        return new SpelAwareProxyProjectionFactory().createProjection(TransactionHistoryRow.class, columns);
+    }
+
+    private TransactionView historyView(Long id, LocalDateTime createdAt) {
+        return TransactionView.builder()
+                .id(id)
+                .fromCardId(sourceCard.getId())
+                .toCardId(destinationCard.getId())
+                .fromCardLast4(sourceCard.getPanLast4())
+                .toCardLast4(destinationCard.getPanLast4())
+                .amount(BigDecimal.TEN)
+                .status(Transaction.TransactionStatus.SUCCESS)
+                .createdAt(createdAt)
+                .build();
+    }
+
+    private Transaction pendingTransaction(Long id, Card fromCard, Card toCard, BigDecimal amount) {
+        return Transaction.builder()
+                .id(id)
+                .fromCard(fromCard)
+                .toCard(toCard)
+                .amount(amount)
+                .status(Transaction.TransactionStatus.PENDING)
+                .build();
     }
 }
@@ -0,0 +1,125 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * JMH-замер EncryptionUtil: операций в секунду и байт, выделенных на операцию (gc.alloc.rate.norm).
+ * "legacy" повторяет прежнюю реализацию: SHA-256 от секрета, новый SecretKeySpec и Cipher.getInstance на каждый вызов.
+ * Пакетные замеры считают одну операцию на весь пакет из batchSize номеров.
+ * Запуск: ./mvnw test -Dtest=EncryptionUtilBenchmark -Dbenchmark.jmh=true
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(0)
+public class EncryptionUtilBenchmark {
+
+    private static final String SECRET = "benchmark-secret";
+    private static final String CARD_NUMBER = "4000001234567890";
+
+    @Param({"1000"})
+    private int batchSize;
+
+    private EncryptionUtil encryptionUtil;
+    private String encryptedNumber;
+    private List<String> numbers;
+    private List<String> encryptedNumbers;
+
+    @Setup
+    public void setUp() {
+        encryptionUtil = new EncryptionUtil();
+        ReflectionTestUtils.setField(encryptionUtil, "secretKey", SECRET);
+        ReflectionTestUtils.setField(encryptionUtil, "algorithm", "AES");
+        ReflectionTestUtils.setField(encryptionUtil, "parallelThreshold", 2048);
+        encryptionUtil.init();
+
+        encryptedNumber = encryptionUtil.encrypt(CARD_NUMBER);
+        numbers = IntStream.range(0, batchSize)
+                .mapToObj(i -> String.format("4000%012d", i))
+                .toList();
+        encryptedNumbers = encryptionUtil.encryptAll(numbers);
+    }
+
+    @Benchmark
+    public String legacyEncrypt() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.ENCRYPT_MODE, legacyKey());
+        return Base64.getEncoder().encodeToString(cipher.doFinal(CARD_NUMBER.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public String legacyDecrypt() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.DECRYPT_MODE, legacyKey());
+        return new String(cipher.doFinal(Base64.getDecoder().decode(encryptedNumber)), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return encryptionUtil.encrypt(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return encryptionUtil.decrypt(encryptedNumber);
+    }
+
+    @Benchmark
+    public List<String> decryptEach() {
+        return encryptedNumbers.stream().map(encryptionUtil::decrypt).toList();
+    }
+
+    @Benchmark
+    public List<String> decryptAll() {
+        return encryptionUtil.decryptAll(encryptedNumbers);
+    }
+
+    @Benchmark
+    public List<String> encryptAll() {
+        return encryptionUtil.encryptAll(numbers);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.jmh", matches = "true")
+    void runBenchmarks() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EncryptionUtilBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+
+    private static SecretKeySpec legacyKey() throws Exception {
+        byte[] key = MessageDigest.getInstance("SHA-256").digest(SECRET.getBytes(StandardCharsets.UTF_8));
+        return new SecretKeySpec(Arrays.copyOf(key, 16), "AES");
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EncryptionUtilTest {
+
+    private static final String CARD_NUMBER = "4000001234567890";
+
+    private EncryptionUtil encryptionUtil;
+
+    @BeforeEach
+    void setUp() {
+        encryptionUtil = new EncryptionUtil();
+        ReflectionTestUtils.setField(encryptionUtil, "secretKey", "test-secret");
+        ReflectionTestUtils.setField(encryptionUtil, "algorithm", "AES");
+        ReflectionTestUtils.setField(encryptionUtil, "parallelThreshold", 100);
+        encryptionUtil.init();
+    }
+
+    @Test
+    void encrypt_MatchesStoredCiphertext() {
+        // Шифротекст, сохраненный прежней реализацией: уже записанные номера карт должны расшифровываться
+        String stored = "l663NKEXtt3MaCIgI5WbpBP2ZgyPqO+2TXbxJlccvGw=";
+
+        // Act & Assert
+        assertEquals(stored, encryptionUtil.encrypt(CARD_NUMBER));
+        assertEquals(CARD_NUMBER, encryptionUtil.decrypt(stored));
+    }
+
+    @Test
+    void encryptAll_LargeBatch_MatchesSingleCalls() {
+        // Arrange
+        List<String> numbers = IntStream.range(0, 1000)
+                .mapToObj(i -> String.format("4000%012d", i))
+                .toList();
+
+        // Act
+        List<String> encrypted = encryptionUtil.encryptAll(numbers);
+        List<String> decrypted = encryptionUtil.decryptAll(encrypted);
+
+        // Assert
+        assertEquals(numbers.stream().map(encryptionUtil::encrypt).toList(), encrypted);
+        assertEquals(numbers, decrypted);
+    }
+
+    @Test
+    void decrypt_InvalidData_ThrowsAndKeepsCipherUsable() {
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> encryptionUtil.decrypt("AAAAAAAAAAAAAAAAAAAAAA=="));
+        assertThrows(RuntimeException.class, () -> encryptionUtil.decryptAll(List.of("AAAAAAAAAAAAAAAAAAAAAA==")));
+        assertEquals(CARD_NUMBER, encryptionUtil.decrypt(encryptionUtil.encrypt(CARD_NUMBER)));
+    }
+}